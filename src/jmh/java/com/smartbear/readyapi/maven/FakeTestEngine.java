@@ -0,0 +1,363 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A local stand-in for TestEngine serving the endpoints used by RunMojo - POST /api/v1/testjobs and
+ * /api/v1/testjobs/recipe (synchronous or with ?async=true), GET /api/v1/testjobs/{id}/report and
+ * DELETE /api/v1/testjobs/{id} to cancel an async job.
+ * Latencies, error rates, report sizes and the duration of async jobs are configurable; authentication
+ * is accepted but not checked.
+ */
+
+public class FakeTestEngine implements Closeable {
+    private static final String API = "/api/v1/testjobs";
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, AsyncJob> asyncJobs = new ConcurrentHashMap<>();
+
+    private Latency latency = Latency.parse("constant:0");
+    private Latency asyncDuration = Latency.parse("constant:1000");
+    private double failureRate;
+    private double errorRate;
+    private double overloadRate;
+    private byte[] passedSuites;
+    private byte[] failedSuites;
+
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicLong reportRequests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong overloads = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+
+    /**
+     * @param port the port to listen on, 0 picks a free one
+     */
+
+    public FakeTestEngine(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        // sleeping handlers must not hold up other requests, and must not keep the JVM alive
+        executor = (ThreadPoolExecutor) Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("fake-testengine-%d").setDaemon(true).build());
+        server.setExecutor(executor);
+        server.createContext(API, this::handle);
+        setPayload("small");
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param latency the time synchronous submissions take, see {@link Latency#parse(String)}
+     */
+
+    public void setLatency(Latency latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * @param asyncDuration the time an async job takes from submission until it is finished - it is PENDING
+     *                      for the first fifth of that time and RUNNING for the rest
+     */
+
+    public void setAsyncDuration(Latency asyncDuration) {
+        this.asyncDuration = asyncDuration;
+    }
+
+    /**
+     * @param failureRate the share of test jobs that finish with status FAILED
+     */
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * @param errorRate the share of requests answered with 500 Internal Server Error
+     */
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @param overloadRate the share of submissions rejected with 429 Too Many Requests and Retry-After: 1
+     */
+
+    public void setOverloadRate(double overloadRate) {
+        this.overloadRate = overloadRate;
+    }
+
+    /**
+     * @param size the size of the reports of finished jobs - small, medium or huge as in ReportPayloads
+     */
+
+    public void setPayload(String size) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        passedSuites = mapper.writeValueAsBytes(ReportPayloads.create(size, 0).getTestSuiteResultReports());
+        failedSuites = mapper.writeValueAsBytes(ReportPayloads.create(size, 0.05).getTestSuiteResultReports());
+    }
+
+    public long getSubmissions() {
+        return submissions.get();
+    }
+
+    public long getReportRequests() {
+        return reportRequests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public long getOverloads() {
+        return overloads.get();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getCancellations() {
+        return cancellations.get();
+    }
+
+    /**
+     * @return the number of handler threads, so they can be told apart from the threads of the plugin
+     * running in the same JVM
+     */
+
+    public int getThreadCount() {
+        return executor.getPoolSize();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+
+            if ("POST".equals(method) && (path.equals(API) || path.equals(API + "/recipe"))) {
+                submit(exchange);
+            } else if ("GET".equals(method) && path.startsWith(API + "/") && path.endsWith("/report")) {
+                report(exchange, path.substring(API.length() + 1, path.length() - "/report".length()));
+            } else if ("DELETE".equals(method) && path.startsWith(API + "/")) {
+                cancel(exchange, path.substring(API.length() + 1));
+            } else {
+                send(exchange, 404, "text/plain", ("No fake for " + method + " " + path).getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException, InterruptedException {
+        submissions.incrementAndGet();
+        readBody(exchange);
+
+        Random random = ThreadLocalRandom.current();
+        if (random.nextDouble() < overloadRate) {
+            overloads.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", "1");
+            send(exchange, 429, "text/plain", "Too many test jobs".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        if (random.nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            send(exchange, 500, "text/plain", "Fake internal error".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        String testjobId = UUID.randomUUID().toString();
+        boolean failed = random.nextDouble() < failureRate;
+        String query = exchange.getRequestURI().getQuery();
+
+        if (query != null && query.contains("async=true")) {
+            AsyncJob job = new AsyncJob(asyncDuration.sample(random), failed);
+            asyncJobs.put(testjobId, job);
+            send(exchange, 200, "application/json", body(testjobId, TestJobReport.StatusEnum.PENDING, 0, null));
+            return;
+        }
+
+        long time = latency.sample(random);
+        Thread.sleep(time);
+        send(exchange, 200, "application/json", body(testjobId,
+                failed ? TestJobReport.StatusEnum.FAILED : TestJobReport.StatusEnum.FINISHED, time,
+                failed ? failedSuites : passedSuites));
+    }
+
+    private void report(HttpExchange exchange, String testjobId) throws IOException {
+        reportRequests.incrementAndGet();
+
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.incrementAndGet();
+            send(exchange, 500, "text/plain", "Fake internal error".getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        AsyncJob job = asyncJobs.get(testjobId);
+        if (job == null) {
+            send(exchange, 404, "text/plain", ("Unknown test job " + testjobId).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        long elapsed = System.currentTimeMillis() - job.submitted;
+        if (job.canceled) {
+            send(exchange, 200, "application/json", body(testjobId, TestJobReport.StatusEnum.CANCELED, elapsed, null));
+        } else if (elapsed < job.duration / 5) {
+            send(exchange, 200, "application/json", body(testjobId, TestJobReport.StatusEnum.PENDING, 0, null));
+        } else if (elapsed < job.duration) {
+            send(exchange, 200, "application/json", body(testjobId, TestJobReport.StatusEnum.RUNNING, 0, null));
+        } else {
+            send(exchange, 200, "application/json", body(testjobId,
+                    job.failed ? TestJobReport.StatusEnum.FAILED : TestJobReport.StatusEnum.FINISHED, job.duration,
+                    job.failed ? failedSuites : passedSuites));
+        }
+    }
+
+    private void cancel(HttpExchange exchange, String testjobId) throws IOException {
+        AsyncJob job = asyncJobs.get(testjobId);
+        if (job == null) {
+            send(exchange, 404, "text/plain", ("Unknown test job " + testjobId).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        cancellations.incrementAndGet();
+        job.canceled = true;
+        send(exchange, 200, "application/json", body(testjobId, TestJobReport.StatusEnum.CANCELED, 0, null));
+    }
+
+    private void readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        bytesReceived.addAndGet(ByteStreams.exhaust(in));
+    }
+
+    private static byte[] body(String testjobId, TestJobReport.StatusEnum status, long totalTime, byte[] suites)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(suites == null ? 128 : suites.length + 128);
+        out.write(("{\"testjobId\":\"" + testjobId + "\",\"status\":\"" + status + "\",\"totalTime\":" + totalTime)
+                .getBytes(StandardCharsets.UTF_8));
+        if (suites != null) {
+            out.write(",\"testSuiteResultReports\":".getBytes(StandardCharsets.UTF_8));
+            out.write(suites);
+        }
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static class AsyncJob {
+        private final long submitted = System.currentTimeMillis();
+        private final long duration;
+        private final boolean failed;
+        private volatile boolean canceled;
+
+        AsyncJob(long duration, boolean failed) {
+            this.duration = duration;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * A distribution of durations in milliseconds
+     */
+
+    public interface Latency {
+
+        long sample(Random random);
+
+        /**
+         * @param spec constant:&lt;ms&gt;, uniform:&lt;min&gt;:&lt;max&gt;, exponential:&lt;mean&gt; or
+         *             lognormal:&lt;median&gt;:&lt;sigma&gt; - lognormal gives the long tail real test runs have
+         */
+
+        static Latency parse(String spec) {
+            String[] parts = spec.split(":");
+            try {
+                switch (parts[0]) {
+                    case "constant":
+                        long value = Long.parseLong(parts[1]);
+                        return random -> value;
+                    case "uniform":
+                        long min = Long.parseLong(parts[1]);
+                        long max = Long.parseLong(parts[2]);
+                        return random -> min + (long) (random.nextDouble() * (max - min));
+                    case "exponential":
+                        double mean = Double.parseDouble(parts[1]);
+                        return random -> (long) (-mean * Math.log(1 - random.nextDouble()));
+                    case "lognormal":
+                        double median = Double.parseDouble(parts[1]);
+                        double sigma = Double.parseDouble(parts[2]);
+                        return random -> (long) (median * Math.exp(sigma * random.nextGaussian()));
+                    default:
+                        throw new IllegalArgumentException("Unknown latency distribution " + spec);
+                }
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid latency distribution " + spec, e);
+            }
+        }
+    }
+}
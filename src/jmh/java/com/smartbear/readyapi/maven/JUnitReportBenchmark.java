@@ -0,0 +1,82 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding testcases to a JUnitReport and saving it - every tenth testcase is a failure
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JUnitReportBenchmark {
+
+    @Param({"10", "1000", "100000"})
+    private int testCases;
+
+    private Map<String, String> properties;
+    private File target;
+
+    @Setup
+    public void setup() throws IOException {
+        properties = new HashMap<>();
+        properties.put("environment", "staging");
+        properties.put("hostAndPort", "localhost:8080");
+
+        target = File.createTempFile("testengine-report", ".xml");
+    }
+
+    @TearDown
+    public void tearDown() {
+        target.delete();
+    }
+
+    @Benchmark
+    public File addAndSave() throws IOException {
+        JUnitReport report = new JUnitReport();
+        report.setTestSuiteName("benchmark");
+
+        for (int c = 0; c < testCases; c++) {
+            if (c % 10 == 9) {
+                report.addTestCaseWithFailure("recipes/recipe-" + c + ".json", c % 1000,
+                        "[Assertion [Valid HTTP Status Codes] failed: Response status code: 500]",
+                        "<missing stacktrace>", properties);
+            } else {
+                report.addTestCase("recipes/recipe-" + c + ".json", c % 1000, properties);
+            }
+        }
+
+        report.save(target);
+        return target;
+    }
+}
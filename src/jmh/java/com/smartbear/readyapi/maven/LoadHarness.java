@@ -0,0 +1,256 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.base.Strings;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs RunMojo against a FakeTestEngine with generated recipes and reports throughput, peak heap and
+ * thread counts. Both run in the same JVM - thread counts leave out the handler threads of the FakeTestEngine,
+ * while the heap includes its (small) share. Arguments are key=value pairs, see DEFAULTS for the keys - for example
+ * <pre>
+ * recipes=5000 concurrency=32 poll=true asyncDuration=lognormal:2000:0.8 payload=medium
+ * </pre>
+ * Recipes are filtered as in a build, to copies in the target directory - filtering=memory filters them while they
+ * are uploaded and filtering=none disables filtering, to compare the run without it. The results are printed and
+ * written as JSON to the file given by result.
+ */
+
+public class LoadHarness {
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("recipes", "1000");
+        DEFAULTS.put("projects", "0");
+        DEFAULTS.put("recipeSize", "2048");
+        DEFAULTS.put("concurrency", "8");
+        DEFAULTS.put("poll", "false");
+        DEFAULTS.put("pollInterval", "200");
+        DEFAULTS.put("latency", "lognormal:100:0.5");
+        DEFAULTS.put("asyncDuration", "lognormal:1000:0.5");
+        DEFAULTS.put("payload", "small");
+        DEFAULTS.put("failureRate", "0");
+        DEFAULTS.put("errorRate", "0");
+        DEFAULTS.put("overloadRate", "0");
+        DEFAULTS.put("maxFailures", "0");
+        DEFAULTS.put("skipPassedStepMessages", "false");
+        DEFAULTS.put("compressRequests", "false");
+        DEFAULTS.put("profileSteps", "false");
+        DEFAULTS.put("filtering", "file");
+        DEFAULTS.put("verbose", "false");
+        DEFAULTS.put("workDirectory", "");
+        DEFAULTS.put("result", "");
+    }
+
+    private static final long SAMPLE_INTERVAL = 20;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> config = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int index = arg.indexOf('=');
+            if (index < 0 || !DEFAULTS.containsKey(arg.substring(0, index))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected key=value with keys " +
+                        DEFAULTS.keySet());
+            }
+            config.put(arg.substring(0, index), arg.substring(index + 1));
+        }
+
+        File workDirectory = Strings.isNullOrEmpty(config.get("workDirectory")) ?
+                Files.createTempDirectory("testengine-load").toFile() : new File(config.get("workDirectory"));
+        File projectsDirectory = new File(workDirectory, "test-projects");
+        generateFiles(projectsDirectory, Integer.parseInt(config.get("recipes")),
+                Integer.parseInt(config.get("projects")), Integer.parseInt(config.get("recipeSize")));
+
+        try (FakeTestEngine testEngine = new FakeTestEngine(0)) {
+            testEngine.setLatency(FakeTestEngine.Latency.parse(config.get("latency")));
+            testEngine.setAsyncDuration(FakeTestEngine.Latency.parse(config.get("asyncDuration")));
+            testEngine.setPayload(config.get("payload"));
+            testEngine.setFailureRate(Double.parseDouble(config.get("failureRate")));
+            testEngine.setErrorRate(Double.parseDouble(config.get("errorRate")));
+            testEngine.setOverloadRate(Double.parseDouble(config.get("overloadRate")));
+            testEngine.start();
+
+            DefaultPlexusContainer container = MojoFixture.createContainer();
+            Map<String, Object> result;
+            try {
+                RunMojo mojo = createMojo(config, testEngine, container, projectsDirectory, workDirectory);
+                result = run(mojo, testEngine);
+            } finally {
+                container.dispose();
+            }
+            result.put("config", config);
+
+            ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+            System.out.println(mapper.writeValueAsString(result));
+
+            if (!Strings.isNullOrEmpty(config.get("result"))) {
+                File resultFile = new File(config.get("result"));
+                resultFile.getAbsoluteFile().getParentFile().mkdirs();
+                mapper.writeValue(resultFile, result);
+            }
+        }
+    }
+
+    private static Map<String, Object> run(RunMojo mojo, FakeTestEngine testEngine) throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        System.gc();
+        long baselineHeap = memory.getHeapMemoryUsage().getUsed();
+        int baselineThreads = threads.getThreadCount() - testEngine.getThreadCount();
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+
+        // sampled, as the heap and thread peaks of the JVM would include the FakeTestEngine
+        long[] peakHeap = {baselineHeap};
+        int[] peakThreads = {baselineThreads};
+        Thread sampler = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakHeap[0] = Math.max(peakHeap[0], memory.getHeapMemoryUsage().getUsed());
+                peakThreads[0] = Math.max(peakThreads[0], threads.getThreadCount() - testEngine.getThreadCount());
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "load-harness-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        String error = null;
+        long start = System.nanoTime();
+        try {
+            mojo.execute();
+        } catch (Exception e) {
+            error = e.toString() + (e.getCause() == null ? "" : " caused by " + e.getCause());
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        sampler.interrupt();
+        sampler.join();
+
+        long jobs = testEngine.getSubmissions() - testEngine.getOverloads();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("error", error);
+        result.put("elapsedMillis", elapsed);
+        result.put("jobsPerSecond", elapsed == 0 ? 0 : jobs * 1000.0 / elapsed);
+        result.put("submissions", testEngine.getSubmissions());
+        result.put("reportRequests", testEngine.getReportRequests());
+        result.put("overloads", testEngine.getOverloads());
+        result.put("errors", testEngine.getErrors());
+        result.put("bytesReceived", testEngine.getBytesReceived());
+        result.put("cancellations", testEngine.getCancellations());
+        result.put("baselineHeapBytes", baselineHeap);
+        result.put("peakHeapBytes", peakHeap[0]);
+        result.put("baselineThreads", baselineThreads);
+        result.put("peakThreads", peakThreads[0]);
+        result.put("gcCount", gcCount() - gcCount);
+        result.put("gcMillis", gcTime() - gcTime);
+        return result;
+    }
+
+    private static RunMojo createMojo(Map<String, String> config, FakeTestEngine testEngine,
+                                      DefaultPlexusContainer container, File projectsDirectory, File workDirectory)
+            throws ComponentLookupException {
+        Model model = new Model();
+        model.setName("load-harness");
+        MavenProject project = new MavenProject(model);
+        project.setFile(new File(workDirectory, "pom.xml"));
+
+        RunMojo mojo = MojoFixture.createMojo(project, projectsDirectory, new File(workDirectory, "target"));
+        mojo.setServer(testEngine.getUrl());
+        mojo.setUsername("load");
+        mojo.setPassword("load");
+
+        String filtering = config.get("filtering");
+        if (!filtering.equals("file") && !filtering.equals("memory") && !filtering.equals("none")) {
+            throw new IllegalArgumentException("Unknown filtering " + filtering + ", expected file, memory or none");
+        }
+        MojoFixture.setFilteringComponents(mojo, container);
+        mojo.setDisableFiltering(filtering.equals("none"));
+        mojo.setFilterInMemory(filtering.equals("memory"));
+        Map<String, String> properties = new HashMap<>();
+        properties.put("load.host", "http://localhost");
+        mojo.setProperties(properties);
+        mojo.setFailOnFailures(false);
+        mojo.setMaxFailures(Integer.parseInt(config.get("maxFailures")));
+        mojo.setAsync(false);
+        mojo.setPoll(Boolean.parseBoolean(config.get("poll")));
+        mojo.setPollInterval(Long.parseLong(config.get("pollInterval")));
+        mojo.setConcurrency(Integer.parseInt(config.get("concurrency")));
+        mojo.setSkipPassedStepMessages(Boolean.parseBoolean(config.get("skipPassedStepMessages")));
+        mojo.setCompressRequests(Boolean.parseBoolean(config.get("compressRequests")));
+        mojo.setProfileSteps(Boolean.parseBoolean(config.get("profileSteps")));
+        mojo.setWriteMetrics(true);
+
+        if (!Boolean.parseBoolean(config.get("verbose"))) {
+            mojo.setLog(MojoFixture.quietLog());
+        }
+
+        return mojo;
+    }
+
+    private static void generateFiles(File directory, int recipes, int projects, int recipeSize) throws IOException {
+        StringBuilder padding = new StringBuilder();
+        while (padding.length() < recipeSize) {
+            padding.append("{ \"type\": \"REST Request\", \"method\": \"GET\", \"URI\": \"${load.host}/pet\" },\n");
+        }
+
+        for (int c = 0; c < recipes; c++) {
+            File file = new File(directory, "suite-" + (c % 10) + "/recipe-" + c + ".json");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), ("{ \"testSteps\": [\n" + padding + "{ \"type\": \"Delay\" } ] }\n")
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (int c = 0; c < projects; c++) {
+            File file = new File(directory, "projects/project-" + c + ".xml");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), ("<con:soapui-project xmlns:con=\"http://eviware.com/soapui/config\" name=\"project-" +
+                    c + "\"/>\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcTime() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collecting and logging the failed steps of a failed TestJobReport - the log hands the lines to a
+ * Blackhole, so console output does not dominate the measurement
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LogErrorsBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    private String size;
+
+    @Param({"0.01", "0.2"})
+    private double failureRate;
+
+    private TestJobReport report;
+    private Log log;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        report = ReportPayloads.create(size, failureRate);
+        log = new SystemStreamLog() {
+            @Override
+            public void error(CharSequence content) {
+                blackhole.consume(content);
+            }
+        };
+    }
+
+    @Benchmark
+    public String logErrorsToConsole() {
+        return RunMojo.logErrorsToConsole(report, log);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.filtering.MavenReaderFilter;
+import org.apache.maven.shared.filtering.MavenResourcesFiltering;
+import org.codehaus.plexus.ContainerConfiguration;
+import org.codehaus.plexus.DefaultContainerConfiguration;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.PlexusConstants;
+import org.codehaus.plexus.PlexusContainerException;
+import org.codehaus.plexus.component.repository.exception.ComponentLookupException;
+import org.codehaus.plexus.logging.Logger;
+
+import java.io.File;
+import java.util.Properties;
+
+/**
+ * Sets up RunMojo the way Maven would for the benchmarks and the load harness, which run it without Maven
+ */
+
+public class MojoFixture {
+
+    /**
+     * @return a mojo with the defaults of the @Parameter annotations, resolved against the project and build
+     * directory - without a session, as the mojo only reads the system and user properties from it
+     */
+
+    public static RunMojo createMojo(MavenProject project, File projectsDirectory, File buildDirectory) {
+        RunMojo mojo = new RunMojo() {
+            @Override
+            Properties getSystemProperties() {
+                return new Properties();
+            }
+
+            @Override
+            Properties getUserProperties() {
+                return new Properties();
+            }
+        };
+
+        mojo.setMavenProject(project);
+        mojo.setProjectsDirectory(projectsDirectory);
+        mojo.setTargetDirectory(new File(buildDirectory, "test-recipes"));
+        mojo.setReportTarget(new File(buildDirectory, "surefire-reports"));
+        mojo.setDurationHistoryFile(new File(buildDirectory, "testengine-durations.properties"));
+        mojo.setMetricsDirectory(buildDirectory);
+        mojo.setAsync(true);
+        mojo.setFailOnFailures(true);
+        mojo.setDetectTestFiles(true);
+        mojo.setConcurrency(1);
+        mojo.setMaxRetries(5);
+        mojo.setRetryInterval(1000);
+        mojo.setPollInterval(1000);
+        mojo.setMaxPollInterval(30000);
+        mojo.setCompressionThreshold(65536);
+        mojo.setShardIndex(1);
+        mojo.setShardCount(1);
+        mojo.setMaxPendingRows(100);
+        mojo.setProfileTopSteps(20);
+        return mojo;
+    }
+
+    /**
+     * @return a container providing the maven-filtering components Maven would inject, logging warnings only
+     */
+
+    public static DefaultPlexusContainer createContainer() throws PlexusContainerException {
+        ContainerConfiguration configuration = new DefaultContainerConfiguration()
+                .setClassPathScanning(PlexusConstants.SCANNING_INDEX)
+                .setAutoWiring(true);
+        DefaultPlexusContainer container = new DefaultPlexusContainer(configuration);
+        container.getLoggerManager().setThresholds(Logger.LEVEL_WARN);
+        return container;
+    }
+
+    public static void setFilteringComponents(RunMojo mojo, DefaultPlexusContainer container)
+            throws ComponentLookupException {
+        mojo.setResourcesFiltering(container.lookup(MavenResourcesFiltering.class));
+        mojo.setReaderFilter(container.lookup(MavenReaderFilter.class));
+    }
+
+    /**
+     * @return a log that only writes warnings and errors, so logging every job does not distort the measurements
+     */
+
+    public static Log quietLog() {
+        return new SystemStreamLog() {
+            @Override
+            public boolean isInfoEnabled() {
+                return false;
+            }
+
+            @Override
+            public void info(CharSequence content) {
+            }
+
+            @Override
+            public void debug(CharSequence content) {
+            }
+        };
+    }
+}
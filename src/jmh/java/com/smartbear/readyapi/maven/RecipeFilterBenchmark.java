@@ -0,0 +1,141 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.io.CharStreams;
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.filtering.MavenFilteringException;
+import org.codehaus.plexus.DefaultPlexusContainer;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filtering recipes with large property maps through RunMojo, with the maven-filtering components Maven would
+ * inject - a single recipe read through filterRecipe as with filterInMemory, and a pass of filterRecipes over a
+ * temp directory of recipes, both without filtered recipes and with all recipes up to date
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RecipeFilterBenchmark {
+    private static final int RECIPES = 20;
+
+    @Param({"100", "10000", "100000"})
+    private int propertyCount;
+
+    @Param({"100", "5000"})
+    private int recipeSteps;
+
+    private String recipe;
+    private File directory;
+    private File targetDirectory;
+    private List<String> files;
+    private DefaultPlexusContainer container;
+    private RunMojo mojo;
+
+    @Setup
+    public void setup() throws Exception {
+        Properties properties = new Properties();
+        for (int c = 0; c < propertyCount; c++) {
+            properties.setProperty("property." + c, "value-" + c);
+        }
+        properties.setProperty("testengine.host", "https://petstore.example.com");
+
+        StringBuilder builder = new StringBuilder("{\n  \"testSteps\": [\n");
+        for (int c = 0; c < recipeSteps; c++) {
+            builder.append("    {\n")
+                    .append("      \"type\": \"REST Request\",\n")
+                    .append("      \"method\": \"GET\",\n")
+                    .append("      \"URI\": \"${testengine.host}/v2/pet/${property.").append(c % propertyCount).append("}\",\n")
+                    .append("      \"assertions\": [ { \"type\": \"Valid HTTP Status Codes\", \"validStatusCodes\": [ 200 ] } ]\n")
+                    .append(c < recipeSteps - 1 ? "    },\n" : "    }\n");
+        }
+        recipe = builder.append("  ]\n}\n").toString();
+
+        directory = Files.createTempDirectory("testengine-benchmark").toFile();
+        File projectsDirectory = new File(directory, "src/test/resources/recipes");
+        targetDirectory = new File(directory, "target/test-recipes");
+        projectsDirectory.mkdirs();
+        files = new ArrayList<>();
+        for (int c = 0; c < RECIPES; c++) {
+            String file = "recipe-" + c + ".json";
+            Files.write(new File(projectsDirectory, file).toPath(), recipe.getBytes(Charset.defaultCharset()));
+            files.add(file);
+        }
+
+        container = MojoFixture.createContainer();
+
+        Model model = new Model();
+        model.setGroupId("com.smartbear.benchmark");
+        model.setArtifactId("recipe-filter-benchmark");
+        model.setVersion("1.0");
+        MavenProject project = new MavenProject(model);
+        project.setFile(new File(directory, "pom.xml"));
+
+        mojo = MojoFixture.createMojo(project, projectsDirectory, new File(directory, "target"));
+        MojoFixture.setFilteringComponents(mojo, container);
+        mojo.setProperties(properties);
+        mojo.setLog(MojoFixture.quietLog());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        container.dispose();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public String filter() throws IOException {
+        try (Reader reader = mojo.filterRecipe(new StringReader(recipe), Collections.emptyMap())) {
+            return CharStreams.toString(reader);
+        }
+    }
+
+    @Benchmark
+    public void filterRecipes() throws IOException, MavenFilteringException {
+        // the mojo keeps the RecipeFilterCache between runs, so the filtered recipes are deleted instead
+        FileUtils.deleteDirectory(targetDirectory);
+        mojo.filterRecipes(files);
+    }
+
+    @Benchmark
+    public void filterRecipesUpToDate() throws IOException, MavenFilteringException {
+        mojo.filterRecipes(files);
+    }
+}
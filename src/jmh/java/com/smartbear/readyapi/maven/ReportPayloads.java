@@ -0,0 +1,101 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartbear.readyapi.testengine.model.TestCaseResultReport;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import com.smartbear.readyapi.testengine.model.TestStepResultReport;
+import com.smartbear.readyapi.testengine.model.TestSuiteResultReport;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic TestJobReports for the benchmarks - a fixed seed keeps the payloads identical between runs
+ */
+
+class ReportPayloads {
+    private static final long SEED = 42;
+
+    private ReportPayloads() {
+    }
+
+    /**
+     * @param size        small (1 suite, 1 case, 10 steps), medium (5 suites, 20 cases, 20 steps) or huge
+     *                    (20 suites, 50 cases, 50 steps)
+     * @param failureRate the share of steps that fail, with messages as TestEngine reports them
+     */
+
+    static TestJobReport create(String size, double failureRate) {
+        switch (size) {
+            case "small":
+                return create(1, 1, 10, failureRate);
+            case "medium":
+                return create(5, 20, 20, failureRate);
+            case "huge":
+                return create(20, 50, 50, failureRate);
+            default:
+                throw new IllegalArgumentException("Unknown size " + size);
+        }
+    }
+
+    static TestJobReport create(int suites, int casesPerSuite, int stepsPerCase, double failureRate) {
+        Random random = new Random(SEED);
+        TestJobReport report = new TestJobReport()
+                .testjobId("benchmark-job")
+                .status(failureRate > 0 ? TestJobReport.StatusEnum.FAILED : TestJobReport.StatusEnum.FINISHED)
+                .totalTime(0L);
+
+        long totalTime = 0;
+        for (int s = 0; s < suites; s++) {
+            TestSuiteResultReport suite = new TestSuiteResultReport().testSuiteName("TestSuite " + s);
+            for (int c = 0; c < casesPerSuite; c++) {
+                TestCaseResultReport testCase = new TestCaseResultReport().testCaseName("TestCase " + c);
+                for (int t = 0; t < stepsPerCase; t++) {
+                    boolean failed = random.nextDouble() < failureRate;
+                    long timeTaken = 5 + random.nextInt(500);
+                    totalTime += timeTaken;
+
+                    List<String> messages = new ArrayList<>();
+                    messages.add("Response status 200 OK for GET https://petstore.example.com/v2/pet/" + t);
+                    if (failed) {
+                        messages.add("Assertion [Valid HTTP Status Codes] failed: Response status code: 500 is not in acceptable list of status codes");
+                        messages.add("Assertion [Contains] failed: Missing token [\"status\":\"available\"] in Response");
+                    }
+
+                    testCase.addTestStepResultReportsItem(new TestStepResultReport()
+                            .testStepName("REST Request " + t)
+                            .assertionStatus(failed ? TestStepResultReport.AssertionStatusEnum.FAIL :
+                                    TestStepResultReport.AssertionStatusEnum.OK)
+                            .timeTaken(timeTaken)
+                            .messages(messages));
+                }
+                suite.addTestCaseResultReportsItem(testCase);
+            }
+            report.addTestSuiteResultReportsItem(suite);
+        }
+
+        return report.totalTime(totalTime);
+    }
+
+    static byte[] toJson(TestJobReport report) throws JsonProcessingException {
+        return new ObjectMapper().writeValueAsBytes(report);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a TestJobReport response body as RunMojo does for every job
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TestJobReportReaderBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    private String size;
+
+    @Param({"false", "true"})
+    private boolean skipPassedStepMessages;
+
+    private byte[] body;
+
+    @Setup
+    public void setup() throws IOException {
+        body = ReportPayloads.toJson(ReportPayloads.create(size, 0.05));
+    }
+
+    @Benchmark
+    public TestJobReport read() throws IOException {
+        return TestJobReportReader.read(new ByteArrayInputStream(body), skipPassedStepMessages);
+    }
+}
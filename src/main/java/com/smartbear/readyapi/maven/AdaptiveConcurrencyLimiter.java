@@ -0,0 +1,106 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Limits the number of requests in flight to TestEngine, adapting the limit AIMD-style: the limit is halved
+ * when TestEngine signals overload (or latency rises well above its average) and grows by one for every
+ * limit's worth of successful requests, up to the configured maximum.
+ */
+
+public class AdaptiveConcurrencyLimiter {
+    // an overloaded server usually rejects several requests at once - halve the limit once per interval
+    private static final long DECREASE_INTERVAL = 1000;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LATENCY_SMOOTHING = 0.1;
+
+    private final int maxLimit;
+    private final Log log;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+    private double averageLatency = -1;
+
+    public AdaptiveConcurrencyLimiter(int maxLimit, Log log) {
+        this.maxLimit = Math.max(1, maxLimit);
+        this.limit = this.maxLimit;
+        this.log = log;
+    }
+
+    public synchronized void acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+    }
+
+    public synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * @param latency      the time in milliseconds the request took
+     * @param trackLatency whether latency reflects server load - not the case for synchronous runs, where it
+     *                     mostly depends on how long the test takes
+     */
+
+    public synchronized void onSuccess(long latency, boolean trackLatency) {
+        if (trackLatency) {
+            boolean slow = averageLatency > 0 && latency > averageLatency * LATENCY_TOLERANCE;
+            averageLatency = averageLatency < 0 ? latency :
+                    averageLatency + LATENCY_SMOOTHING * (latency - averageLatency);
+
+            if (slow) {
+                decrease("latency of " + latency + "ms");
+                return;
+            }
+        }
+
+        int previous = (int) limit;
+        limit = Math.min(maxLimit, limit + 1 / limit);
+        if ((int) limit > previous) {
+            log.info("Concurrency limit increased to " + (int) limit);
+            notifyAll();
+        }
+    }
+
+    public synchronized void onOverload(String reason) {
+        decrease(reason);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    private void decrease(String reason) {
+        long now = System.currentTimeMillis();
+        if (now - lastDecrease < DECREASE_INTERVAL) {
+            return;
+        }
+
+        lastDecrease = now;
+        int previous = (int) limit;
+        limit = Math.max(1, limit / 2);
+        if ((int) limit < previous) {
+            log.warn("Concurrency limit reduced to " + (int) limit + " after " + reason);
+        }
+    }
+}
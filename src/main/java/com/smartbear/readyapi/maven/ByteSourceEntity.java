@@ -0,0 +1,66 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.io.ByteSource;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Repeatable request entity for a payload that is either a file or held in memory, so a request can
+ * be resent when TestEngine asks to retry it
+ */
+
+public class ByteSourceEntity extends AbstractHttpEntity {
+    private final ByteSource source;
+
+    public ByteSourceEntity(ByteSource source, ContentType contentType) {
+        this.source = source;
+        if (contentType != null) {
+            setContentType(contentType.toString());
+        }
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public long getContentLength() {
+        return source.sizeIfKnown().or(-1L);
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        return source.openStream();
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        source.copyTo(outStream);
+    }
+
+    @Override
+    public boolean isStreaming() {
+        return false;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.io.CountingOutputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Request entity that counts the bytes actually written to the connection and the time it took to write them
+ */
+
+public class CountingEntity extends HttpEntityWrapper {
+    private volatile long bytesWritten;
+    private volatile long writeStarted;
+    private volatile long writeFinished;
+
+    public CountingEntity(HttpEntity wrappedEntity) {
+        super(wrappedEntity);
+    }
+
+    @Override
+    public void writeTo(OutputStream outStream) throws IOException {
+        writeStarted = System.nanoTime();
+        CountingOutputStream out = new CountingOutputStream(outStream);
+        super.writeTo(out);
+        out.flush();
+        bytesWritten = out.getCount();
+        writeFinished = System.nanoTime();
+    }
+
+    /**
+     * @return the time in milliseconds the last write took
+     */
+
+    public long getWriteTime() {
+        return (writeFinished - writeStarted) / 1000000;
+    }
+
+    /**
+     * @return the System.nanoTime() at which the last write finished
+     */
+
+    public long getWriteFinished() {
+        return writeFinished;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+}
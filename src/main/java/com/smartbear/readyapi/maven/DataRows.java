@@ -0,0 +1,228 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the rows of a data file for a data-driven recipe one at a time, so files of any size can be
+ * used. A recipe.json is data-driven if there is a recipe.csv (with a header line) or recipe.jsonl
+ * (one flat JSON object per line) next to it.
+ */
+
+public abstract class DataRows implements Closeable {
+    public static final String[] EXTENSIONS = {".csv", ".jsonl"};
+
+    private final Reader reader;
+    private int rowNumber;
+
+    protected DataRows(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @return the data file for the recipe, or null if the recipe is not data-driven
+     */
+
+    public static File find(File recipe) {
+        String name = recipe.getName();
+        String baseName = name.substring(0, name.lastIndexOf('.'));
+        for (String extension : EXTENSIONS) {
+            File dataFile = new File(recipe.getParentFile(), baseName + extension);
+            if (dataFile.isFile()) {
+                return dataFile;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param encoding the encoding of the data file - the same as that of the recipe, so the values filtered
+     *                 into it keep their characters
+     */
+
+    public static DataRows open(File dataFile, Charset encoding) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(dataFile), encoding));
+        try {
+            return dataFile.getName().toLowerCase().endsWith(".csv") ? new CsvRows(reader) : new JsonLinesRows(reader);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the next row with its values by column name in file order, or null at the end of the file
+     */
+
+    public Map<String, String> next() throws IOException {
+        Map<String, String> row = readRow();
+        if (row != null) {
+            rowNumber++;
+        }
+        return row;
+    }
+
+    /**
+     * @return the key of the row read last - its first value, or its row number if that is empty
+     */
+
+    public String getKey(Map<String, String> row) {
+        Iterator<String> values = row.values().iterator();
+        String key = values.hasNext() ? values.next() : null;
+        return key == null || key.trim().isEmpty() ? String.valueOf(rowNumber) : key.trim();
+    }
+
+    protected abstract Map<String, String> readRow() throws IOException;
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private static class CsvRows extends DataRows {
+        private final BufferedReader reader;
+        private final List<String> header;
+
+        CsvRows(BufferedReader reader) throws IOException {
+            super(reader);
+            this.reader = reader;
+            this.header = readRecord();
+            if (header == null) {
+                throw new IOException("Missing header line");
+            }
+        }
+
+        @Override
+        protected Map<String, String> readRow() throws IOException {
+            List<String> record;
+            do {
+                record = readRecord();
+                if (record == null) {
+                    return null;
+                }
+            } while (record.size() == 1 && record.get(0).isEmpty());
+
+            Map<String, String> row = new LinkedHashMap<>();
+            for (int c = 0; c < header.size(); c++) {
+                row.put(header.get(c), c < record.size() ? record.get(c) : "");
+            }
+            return row;
+        }
+
+        /**
+         * Reads one RFC 4180 record - quoted values can contain separators, doubled quotes and line breaks
+         */
+
+        private List<String> readRecord() throws IOException {
+            int ch = reader.read();
+            if (ch == -1) {
+                return null;
+            }
+
+            List<String> record = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+
+            while (true) {
+                if (quoted) {
+                    if (ch == -1) {
+                        throw new IOException("Unterminated quoted value");
+                    } else if (ch == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            value.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        value.append((char) ch);
+                    }
+                } else if (ch == '"' && value.length() == 0) {
+                    quoted = true;
+                } else if (ch == ',') {
+                    record.add(value.toString());
+                    value.setLength(0);
+                } else if (ch == '\r' || ch == '\n' || ch == -1) {
+                    if (ch == '\r') {
+                        reader.mark(1);
+                        if (reader.read() != '\n') {
+                            reader.reset();
+                        }
+                    }
+                    record.add(value.toString());
+                    return record;
+                } else {
+                    value.append((char) ch);
+                }
+
+                ch = reader.read();
+            }
+        }
+    }
+
+    private static class JsonLinesRows extends DataRows {
+        private static final ObjectReader READER = new ObjectMapper().readerFor(JsonNode.class);
+
+        private final MappingIterator<JsonNode> rows;
+
+        JsonLinesRows(Reader reader) throws IOException {
+            super(reader);
+            this.rows = READER.readValues(reader);
+        }
+
+        @Override
+        protected Map<String, String> readRow() throws IOException {
+            if (!rows.hasNextValue()) {
+                return null;
+            }
+
+            JsonNode node = rows.nextValue();
+            if (!node.isObject()) {
+                throw new IOException("Expected a JSON object per line but got " + node.getNodeType());
+            }
+
+            Map<String, String> row = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode value = field.getValue();
+                row.put(field.getKey(), value.isNull() ? "" : value.isValueNode() ? value.asText() : value.toString());
+            }
+            return row;
+        }
+    }
+}
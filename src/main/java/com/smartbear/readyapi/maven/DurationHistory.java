@@ -0,0 +1,237 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.hash.Hashing;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Recorded TestEngine run times per recipe/project, used to schedule the longest jobs first and to shard by
+ * duration. A file run against several targets is recorded with the total of all targets, under its path. Each
+ * recorded duration is averaged with the previous one, so a single slow or fast run does not dominate.
+ */
+
+public class DurationHistory {
+    private final File file;
+    private final Properties durations = new Properties();
+    private long defaultEstimate = -1;
+
+    private DurationHistory(File file) {
+        this.file = file;
+    }
+
+    public static DurationHistory load(File file) throws IOException {
+        DurationHistory history = new DurationHistory(file);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                history.durations.load(in);
+            }
+        }
+        return history;
+    }
+
+    /**
+     * @return the recorded duration in milliseconds, or null if the file has not been run before
+     */
+
+    public Long getDuration(String name) {
+        String value = durations.getProperty(name);
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the recorded duration, or the median of all recorded durations for files that have not been run before
+     */
+
+    public long estimate(String name) {
+        Long duration = getDuration(name);
+        if (duration != null) {
+            return duration;
+        }
+
+        if (defaultEstimate < 0) {
+            List<Long> known = new ArrayList<>();
+            for (String key : durations.stringPropertyNames()) {
+                Long value = getDuration(key);
+                if (value != null) {
+                    known.add(value);
+                }
+            }
+            Collections.sort(known);
+            defaultEstimate = known.isEmpty() ? 0 : known.get(known.size() / 2);
+        }
+
+        return defaultEstimate;
+    }
+
+    public synchronized void record(String name, long duration) {
+        Long previous = getDuration(name);
+        durations.setProperty(name, String.valueOf(previous == null ? duration : (previous + duration) / 2));
+    }
+
+    public synchronized void save() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            durations.store(out, "ReadyAPI TestEngine run times in milliseconds");
+        }
+    }
+
+    /**
+     * Splits the files into shards of about the same estimated total duration. The split only depends on the
+     * files and the recorded durations, so every shard computes the same split only when all of them read the
+     * same history and none of them writes to it.
+     *
+     * @param shardIndex the shard to return, from 1 to shardCount
+     * @return the files of the shard, in their original order
+     */
+
+    public List<String> shard(List<String> files, int shardIndex, int shardCount) {
+        List<String> sorted = new ArrayList<>(files);
+        sorted.sort(Comparator.comparingLong(this::estimate).reversed().thenComparing(Comparator.naturalOrder()));
+
+        long[] durations = new long[shardCount];
+        int[] counts = new int[shardCount];
+        Set<String> shard = new HashSet<>();
+
+        // assign each file to the shard with the lowest total so far, longest files first -
+        // shards with equal totals (e.g. without any history) are balanced by file count
+        for (String file : sorted) {
+            int target = 0;
+            for (int c = 1; c < shardCount; c++) {
+                if (durations[c] < durations[target] || (durations[c] == durations[target] && counts[c] < counts[target])) {
+                    target = c;
+                }
+            }
+
+            durations[target] += estimate(file);
+            counts[target]++;
+            if (target == shardIndex - 1) {
+                shard.add(file);
+            }
+        }
+
+        List<String> result = new ArrayList<>();
+        for (String file : files) {
+            if (shard.contains(file)) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits the files into shards by a hash of their path, for sharding without a shared history. The split
+     * only depends on the path of each file, so every shard computes the same split, and adding or removing a
+     * file does not move any of the others to another shard.
+     *
+     * @param shardIndex the shard to return, from 1 to shardCount
+     * @return the files of the shard, in their original order
+     */
+
+    public static List<String> shardByPath(List<String> files, int shardIndex, int shardCount) {
+        List<String> result = new ArrayList<>();
+        for (String file : files) {
+            // the same file is found with different separators on Windows and Unix agents
+            int hash = Hashing.murmur3_32_fixed().hashString(file.replace('\\', '/'), StandardCharsets.UTF_8).asInt();
+            if (Math.floorMod(hash, shardCount) == shardIndex - 1) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the jobs ordered by estimated duration, longest first - jobs with equal estimates keep their order
+     */
+
+    public List<TestJob> longestFirst(List<TestJob> jobs) {
+        Map<TestJob, Long> estimates = estimateJobs(jobs);
+        List<TestJob> sorted = new ArrayList<>(jobs);
+        sorted.sort(Comparator.comparingLong((TestJob job) -> estimates.get(job)).reversed());
+        return sorted;
+    }
+
+    /**
+     * Predicts the total duration of running the jobs in the specified order with the specified number of
+     * parallel slots, each job starting on the first slot that becomes free
+     */
+
+    public long predictTotalDuration(List<TestJob> jobs, int slots) {
+        PriorityQueue<Long> slotEndTimes = new PriorityQueue<>();
+        for (int c = 0; c < Math.max(1, slots); c++) {
+            slotEndTimes.add(0L);
+        }
+
+        Map<TestJob, Long> estimates = estimateJobs(jobs);
+        long total = 0;
+        for (TestJob job : jobs) {
+            long end = slotEndTimes.poll() + estimates.get(job);
+            slotEndTimes.add(end);
+            total = Math.max(total, end);
+        }
+
+        return total;
+    }
+
+    /**
+     * @return the estimated duration of each job - the duration of a file is split evenly between its jobs
+     * for the different targets
+     */
+
+    private Map<TestJob, Long> estimateJobs(List<TestJob> jobs) {
+        Map<String, Integer> jobsPerFile = new HashMap<>();
+        for (TestJob job : jobs) {
+            jobsPerFile.merge(job.getFile(), 1, Integer::sum);
+        }
+
+        Map<TestJob, Long> estimates = new IdentityHashMap<>();
+        for (TestJob job : jobs) {
+            estimates.put(job, estimate(job.getFile()) / jobsPerFile.get(job.getFile()));
+        }
+        return estimates;
+    }
+}
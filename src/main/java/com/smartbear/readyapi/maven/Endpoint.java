@@ -0,0 +1,108 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.http.HttpHost;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A TestEngine instance jobs can be dispatched to, configured as
+ *
+ * <pre>
+ * &lt;endpoints&gt;
+ *     &lt;endpoint&gt;
+ *         &lt;url&gt;...&lt;/url&gt;
+ *         &lt;username&gt;...&lt;/username&gt;
+ *         &lt;password&gt;...&lt;/password&gt;
+ *         &lt;weight&gt;2&lt;/weight&gt;
+ *     &lt;/endpoint&gt;
+ * &lt;/endpoints&gt;
+ * </pre>
+ */
+
+public class Endpoint {
+    private String url;
+    private String username;
+    private String password;
+    private int weight = 1;
+
+    private final AtomicInteger outstandingJobs = new AtomicInteger();
+    private volatile long unavailableUntil;
+    private HttpHost httpHost;
+
+    public Endpoint() {
+    }
+
+    public Endpoint(String url, String username, String password, int weight) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.weight = weight;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getWeight() {
+        return Math.max(1, weight);
+    }
+
+    public synchronized HttpHost getHttpHost() throws MalformedURLException {
+        if (httpHost == null) {
+            URL u = new URL(url);
+            httpHost = new HttpHost(u.getHost(), u.getPort(), u.getProtocol());
+        }
+        return httpHost;
+    }
+
+    public int getOutstandingJobs() {
+        return outstandingJobs.get();
+    }
+
+    void jobStarted() {
+        outstandingJobs.incrementAndGet();
+    }
+
+    void jobFinished() {
+        outstandingJobs.decrementAndGet();
+    }
+
+    public boolean isAvailable() {
+        return System.currentTimeMillis() >= unavailableUntil;
+    }
+
+    void markUnavailable(long period) {
+        unavailableUntil = System.currentTimeMillis() + period;
+    }
+
+    @Override
+    public String toString() {
+        return url;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Dispatches jobs to the endpoint with the fewest outstanding jobs relative to its weight. Endpoints that
+ * refused a connection are skipped for a while, unless no other endpoint is left to try.
+ */
+
+public class EndpointSelector {
+    private final List<Endpoint> endpoints;
+    private final long unavailablePeriod;
+
+    /**
+     * @param unavailablePeriod the time in milliseconds an endpoint is avoided after it refused a connection
+     */
+
+    public EndpointSelector(List<Endpoint> endpoints, long unavailablePeriod) {
+        this.endpoints = endpoints;
+        this.unavailablePeriod = unavailablePeriod;
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Selects an endpoint for a job and counts the job as outstanding on it
+     *
+     * @param excluded endpoints that already failed for this job
+     * @throws IOException if all endpoints have been excluded
+     */
+
+    public synchronized Endpoint acquire(Collection<Endpoint> excluded) throws IOException {
+        Endpoint selected = select(excluded, true);
+        if (selected == null) {
+            selected = select(excluded, false);
+        }
+
+        if (selected == null) {
+            throw new IOException("No TestEngine endpoint accepted the job, tried " + excluded);
+        }
+
+        selected.jobStarted();
+        return selected;
+    }
+
+    public synchronized void release(Endpoint endpoint) {
+        endpoint.jobFinished();
+    }
+
+    public void markUnavailable(Endpoint endpoint) {
+        endpoint.markUnavailable(unavailablePeriod);
+    }
+
+    private Endpoint select(Collection<Endpoint> excluded, boolean availableOnly) {
+        Endpoint selected = null;
+        for (Endpoint endpoint : endpoints) {
+            if (excluded.contains(endpoint) || (availableOnly && !endpoint.isAvailable())) {
+                continue;
+            }
+
+            // compare outstanding/weight without dividing: a/wa < b/wb <=> a*wb < b*wa
+            if (selected == null || (long) endpoint.getOutstandingJobs() * selected.getWeight() <
+                    (long) selected.getOutstandingJobs() * endpoint.getWeight()) {
+                selected = endpoint;
+            }
+        }
+        return selected;
+    }
+}
@@ -16,66 +16,78 @@
 
 package com.smartbear.readyapi.maven;
 
-import com.smartbear.readyapi.junit.ErrorDocument;
-import com.smartbear.readyapi.junit.FailureDocument;
-import com.smartbear.readyapi.junit.Properties;
-import com.smartbear.readyapi.junit.Property;
-import com.smartbear.readyapi.junit.Testcase;
-import com.smartbear.readyapi.junit.Testsuite;
-import com.smartbear.readyapi.junit.TestsuiteDocument;
-import org.apache.xmlbeans.XmlOptions;
-
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * Wrapper for a number of Test runs
+ *
+ * Testcases are streamed to a temporary file as they are added, the testsuite element with its totals is
+ * written around them when the report is saved - memory use does not grow with the number of testcases.
+ * The temporary file is removed when the report is saved or closed. The output is valid against report.xsd.
  */
 
-public class JUnitReport {
-    TestsuiteDocument testsuiteDoc;
-    int noofTestCases, noofFailures, noofErrors;
+public class JUnitReport implements Closeable {
+    private static final String NAMESPACE = "http://smartbear.com/readyapi/junit";
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    public static final String CACHED_PROPERTY = "testengine.cached";
+
+    int noofTestCases, noofFailures, noofErrors, noofSkipped;
     double totalTime;
     StringBuffer systemOut;
     StringBuffer systemErr;
 
+    String testSuiteName;
+    String pkg;
+
     boolean includeTestProperties;
 
-    public JUnitReport() {
+    private File testcasesFile;
+    private OutputStream testcasesOut;
+    private XMLStreamWriter testcases;
+    private boolean closed;
+
+    public JUnitReport() throws IOException {
         systemOut = new StringBuffer();
         systemErr = new StringBuffer();
 
-        testsuiteDoc = TestsuiteDocument.Factory.newInstance();
-        Testsuite testsuite = testsuiteDoc.addNewTestsuite();
-        Properties properties = testsuite.addNewProperties();
-        setSystemProperties(properties);
+        testcasesFile = File.createTempFile("testengine-report", ".xml");
+        testcasesOut = new BufferedOutputStream(new FileOutputStream(testcasesFile));
+        try {
+            testcases = OUTPUT_FACTORY.createXMLStreamWriter(testcasesOut, "utf-8");
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
     }
 
     public void setIncludeTestProperties(boolean includeTestProperties) {
         this.includeTestProperties = includeTestProperties;
     }
 
-    public void setTotalTime(double time) {
-        testsuiteDoc.getTestsuite().setTime(Double.toString(Math.round(time * 1000) / 1000));
-    }
-
     public void setTestSuiteName(String name) {
-        testsuiteDoc.getTestsuite().setName(name);
+        this.testSuiteName = name;
     }
 
     public void setPackage(String pkg) {
-        testsuiteDoc.getTestsuite().setPackage(pkg);
-    }
-
-    public void setNoofErrorsInTestSuite(int errors) {
-        testsuiteDoc.getTestsuite().setErrors(errors);
-    }
-
-    public void setNoofFailuresInTestSuite(int failures) {
-        testsuiteDoc.getTestsuite().setFailures(failures);
+        this.pkg = pkg;
     }
 
     public void systemOut(String systemout) {
@@ -86,105 +98,286 @@ public class JUnitReport {
         systemErr.append(systemerr);
     }
 
-    public void setSystemOut(String systemout) {
-        testsuiteDoc.getTestsuite().setSystemOut(systemout);
+    public int getNoofTestCases() {
+        return noofTestCases;
     }
 
-    public void setSystemErr(String systemerr) {
-        testsuiteDoc.getTestsuite().setSystemErr(systemerr);
+    public int getNoofSkipped() {
+        return noofSkipped;
     }
 
-    public Testcase addTestCase(String name, double time, HashMap<String, String> testProperties) {
-        Testcase testcase = testsuiteDoc.getTestsuite().addNewTestcase();
-        testcase.setName(name);
-        testcase.setTime(String.valueOf(time / 1000));
+    public synchronized void addTestCase(String name, double time, Map<String, String> testProperties) throws IOException {
+        try {
+            startTestCase(name, time, testProperties, false);
+            testcases.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+
         noofTestCases++;
         totalTime += time;
-
-        setTestProperties(testProperties, testcase);
-
-        return testcase;
     }
 
-    private void setTestProperties(HashMap<String, String> testProperties, Testcase testcase) {
-        if(!this.includeTestProperties)
-            return;
+    /**
+     * Adds a passed testcase whose result was replayed from the ResultCache instead of being run - it is
+     * marked with a testengine.cached property
+     */
+
+    public synchronized void addCachedTestCase(String name, double time, Map<String, String> testProperties) throws IOException {
+        try {
+            startTestCase(name, time, testProperties, true);
+            testcases.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
 
-        Properties properties = testcase.addNewProperties();
-        setProperties(properties, testProperties);
+        noofTestCases++;
+        totalTime += time;
     }
 
-    public Testcase addTestCaseWithFailure(String name, double time, String failure, String stacktrace, HashMap<String, String> testProperties) {
-        Testcase testcase = testsuiteDoc.getTestsuite().addNewTestcase();
-        testcase.setName(name);
-        testcase.setTime(String.valueOf(time / 1000));
-        FailureDocument.Failure fail = testcase.addNewFailure();
-        fail.setType(failure);
-        fail.setMessage(failure);
-        fail.setStringValue(stacktrace);
+    public synchronized void addTestCaseWithFailure(String name, double time, String failure, String stacktrace,
+                                                    Map<String, String> testProperties) throws IOException {
+        try {
+            startTestCase(name, time, testProperties, false);
+            writeResult("failure", failure, stacktrace);
+            testcases.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+
         noofTestCases++;
         noofFailures++;
         totalTime += time;
-
-        setTestProperties(testProperties, testcase);
-
-        return testcase;
     }
 
-    public Testcase addTestCaseWithError(String name, double time, String error, String stacktrace, HashMap<String, String> testProperties) {
-        Testcase testcase = testsuiteDoc.getTestsuite().addNewTestcase();
-        testcase.setName(name);
-        testcase.setTime(String.valueOf(time / 1000));
-        ErrorDocument.Error err = testcase.addNewError();
-        err.setType(error);
-        err.setMessage(error);
-        err.setStringValue(stacktrace);
+    public synchronized void addTestCaseWithError(String name, double time, String error, String stacktrace,
+                                                  Map<String, String> testProperties) throws IOException {
+        try {
+            startTestCase(name, time, testProperties, false);
+            writeResult("error", error, stacktrace);
+            testcases.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+
         noofTestCases++;
         noofErrors++;
         totalTime += time;
+    }
+
+    /**
+     * Adds a testcase that was not run, for example because the run was stopped after maxFailures
+     */
+
+    public synchronized void addSkippedTestCase(String name, String message, Map<String, String> testProperties) throws IOException {
+        try {
+            startTestCase(name, 0, testProperties, false);
+            testcases.writeEmptyElement("skipped");
+            testcases.writeAttribute("message", message);
+            testcases.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+
+        noofTestCases++;
+        noofSkipped++;
+    }
+
+    private void startTestCase(String name, double time, Map<String, String> testProperties, boolean cached) throws XMLStreamException {
+        testcases.writeStartElement("testcase");
+        testcases.writeAttribute("name", name);
+        testcases.writeAttribute("time", String.valueOf(time / 1000));
+
+        if (includeTestProperties || cached) {
+            testcases.writeStartElement("properties");
+            if (cached) {
+                writeProperty(testcases, CACHED_PROPERTY, "true");
+            }
+            if (includeTestProperties) {
+                for (Map.Entry<String, String> entry : testProperties.entrySet()) {
+                    writeProperty(testcases, entry.getKey(), entry.getValue());
+                }
+            }
+            testcases.writeEndElement();
+        }
+    }
 
-        setTestProperties(testProperties, testcase);
+    private void writeResult(String element, String message, String stacktrace) throws XMLStreamException {
+        testcases.writeStartElement(element);
+        testcases.writeAttribute("type", message);
+        testcases.writeAttribute("message", message);
+        testcases.writeCharacters(stacktrace);
+        testcases.writeEndElement();
+    }
 
-        return testcase;
+    private static void writeProperty(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        writer.writeEmptyElement("property");
+        writer.writeAttribute("name", name);
+        writer.writeAttribute("value", String.valueOf(value));
     }
 
-    private void setSystemProperties(Properties properties) {
-        Set<?> keys = System.getProperties().keySet();
-        for (Object keyO : keys) {
-            String key = keyO.toString();
-            String value = System.getProperty(key);
-            Property prop = properties.addNewProperty();
-            prop.setName(key);
-            prop.setValue(value);
+    private static void writeSystemProperties(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartElement("properties");
+        Set<String> keys = System.getProperties().stringPropertyNames();
+        for (String key : keys) {
+            writeProperty(writer, key, System.getProperty(key, ""));
         }
+        writer.writeEndElement();
     }
 
-    private void setProperties(Properties properties, HashMap<String, String> propertiesToSet) {
-        for (Map.Entry<String, String> stringStringEntry : propertiesToSet.entrySet()) {
-            Property prop = properties.addNewProperty();
-            prop.setName(stringStringEntry.getKey());
-            prop.setValue(stringStringEntry.getValue());
+    /**
+     * Adds all testcases of a previously saved report, for example to merge the reports of several shards
+     */
+
+    public synchronized void addTestCases(File report) throws IOException {
+        addTestCases(report, "");
+    }
+
+    /**
+     * Adds all testcases of a previously saved report with the prefix added to their names, for example to
+     * aggregate the reports of the modules of a reactor build
+     */
+
+    public synchronized void addTestCases(File report, String namePrefix) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(report))) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("testcase")) {
+                        copyTestCase(reader, namePrefix);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Failed to read " + report, e);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    public void save(File file) throws IOException {
-        finishReport();
+    private void copyTestCase(XMLStreamReader reader, String namePrefix) throws XMLStreamException {
+        int depth = 0;
+        while (true) {
+            switch (reader.getEventType()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    testcases.writeStartElement(reader.getLocalName());
+                    for (int c = 0; c < reader.getAttributeCount(); c++) {
+                        String attribute = reader.getAttributeLocalName(c);
+                        testcases.writeAttribute(attribute, depth == 1 && attribute.equals("name") ?
+                                namePrefix + reader.getAttributeValue(c) : reader.getAttributeValue(c));
+                    }
+
+                    if (depth == 1) {
+                        noofTestCases++;
+                        totalTime += parseTime(reader.getAttributeValue(null, "time")) * 1000;
+                    } else if (depth == 2 && reader.getLocalName().equals("failure")) {
+                        noofFailures++;
+                    } else if (depth == 2 && reader.getLocalName().equals("error")) {
+                        noofErrors++;
+                    } else if (depth == 2 && reader.getLocalName().equals("skipped")) {
+                        noofSkipped++;
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    testcases.writeEndElement();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                    testcases.writeCharacters(reader.getText());
+                    break;
+                default:
+                    break;
+            }
+
+            if (depth == 0) {
+                return;
+            }
+            reader.next();
+        }
+    }
 
-        @SuppressWarnings("rawtypes")
-        Map prefixes = new HashMap();
-        prefixes.put("", "http://smartbear.com/readyapi/junit");
+    private static double parseTime(String time) {
+        try {
+            return time == null ? 0 : Double.parseDouble(time);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 
-        testsuiteDoc.save(file, new XmlOptions().setSaveOuter().setCharacterEncoding("utf-8").setUseDefaultNamespace()
-                .setSaveImplicitNamespaces(prefixes));
+    /**
+     * Writes the testsuite with its totals and all added testcases to the specified file and releases the
+     * temporary testcase storage - the report can not be added to after it has been saved
+     */
+
+    public synchronized void save(File file) throws IOException {
+        try {
+            testcases.close();
+            testcasesOut.close();
+
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, "utf-8");
+                writer.writeStartDocument("utf-8", "1.0");
+                writer.setDefaultNamespace(NAMESPACE);
+                writer.writeStartElement(NAMESPACE, "testsuite");
+                writer.writeDefaultNamespace(NAMESPACE);
+                writer.writeAttribute("errors", String.valueOf(noofErrors));
+                writer.writeAttribute("failures", String.valueOf(noofFailures));
+                writer.writeAttribute("skipped", String.valueOf(noofSkipped));
+                if (testSuiteName != null) {
+                    writer.writeAttribute("name", testSuiteName);
+                }
+                writer.writeAttribute("tests", String.valueOf(noofTestCases));
+                writer.writeAttribute("time", String.valueOf(totalTime / 1000));
+                if (pkg != null) {
+                    writer.writeAttribute("package", pkg);
+                }
+
+                writeSystemProperties(writer);
+
+                // the testcases were written without namespace declarations and inherit the default
+                // namespace of the enclosing testsuite element
+                writer.flush();
+                Files.copy(testcasesFile.toPath(), out);
+
+                writer.writeStartElement("system-out");
+                writer.writeCharacters(systemOut.toString());
+                writer.writeEndElement();
+                writer.writeStartElement("system-err");
+                writer.writeCharacters(systemErr.toString());
+                writer.writeEndElement();
+
+                writer.writeEndElement();
+                writer.writeEndDocument();
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            close();
+        }
     }
 
-    public TestsuiteDocument finishReport() {
-        testsuiteDoc.getTestsuite().setTests(noofTestCases);
-        testsuiteDoc.getTestsuite().setFailures(noofFailures);
-        testsuiteDoc.getTestsuite().setErrors(noofErrors);
-        testsuiteDoc.getTestsuite().setTime(String.valueOf(totalTime / 1000));
+    /**
+     * Releases the temporary testcase storage without writing the report - called by save, and needed for
+     * reports that are never saved
+     */
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
 
-        return testsuiteDoc;
+        closed = true;
+        try {
+            testcases.close();
+            testcasesOut.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            testcasesFile.delete();
+        }
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JUnitReports of a run - either a single testengine-report.xml, or one report per suite where the
+ * suite is the folder of a recipe/project relative to the projectsDirectory
+ */
+
+public class JUnitReports implements Closeable {
+    public static final String REPORT_NAME = "testengine-report";
+
+    private final String testSuiteName;
+    private final boolean splitBySuite;
+    private final String reportName;
+    private final Map<String, JUnitReport> reports = new LinkedHashMap<>();
+
+    public JUnitReports(String testSuiteName, boolean splitBySuite) {
+        this(testSuiteName, splitBySuite, REPORT_NAME);
+    }
+
+    /**
+     * @param reportName the name of the report file without the .xml extension
+     */
+
+    public JUnitReports(String testSuiteName, boolean splitBySuite, String reportName) {
+        this.testSuiteName = testSuiteName;
+        this.splitBySuite = splitBySuite;
+        this.reportName = reportName;
+    }
+
+    public synchronized JUnitReport getReport(String file) throws IOException {
+        String suite = splitBySuite ? getSuite(file) : "";
+
+        JUnitReport report = reports.get(suite);
+        if (report == null) {
+            report = new JUnitReport();
+            report.setTestSuiteName(suite.isEmpty() ? testSuiteName : testSuiteName + "." + suite);
+            reports.put(suite, report);
+        }
+
+        return report;
+    }
+
+    /**
+     * Saves all reports to the specified folder - at least one (possibly empty) report is always written
+     *
+     * @return the written report files
+     */
+
+    public synchronized List<File> save(File reportTarget) throws IOException {
+        if (!reportTarget.exists()) {
+            reportTarget.mkdirs();
+        }
+
+        if (reports.isEmpty()) {
+            getReport("");
+        }
+
+        List<File> files = new ArrayList<>();
+        try {
+            for (Map.Entry<String, JUnitReport> entry : reports.entrySet()) {
+                String suite = entry.getKey();
+                String fileName = suite.isEmpty() ? reportName + ".xml" : reportName + "-" + suite + ".xml";
+                File file = new File(reportTarget, fileName);
+                entry.getValue().save(file);
+                files.add(file);
+            }
+        } finally {
+            // the reports not saved because saving an earlier one failed
+            close();
+        }
+        return files;
+    }
+
+    /**
+     * Releases the temporary storage of all reports without writing them
+     */
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (JUnitReport report : reports.values()) {
+            report.close();
+        }
+    }
+
+    private static String getSuite(String file) {
+        String path = file.replace('\\', '/');
+        int ix = path.lastIndexOf('/');
+        return ix <= 0 ? "" : path.substring(0, ix).replaceAll("[^A-Za-z0-9_\\-]+", ".");
+    }
+}
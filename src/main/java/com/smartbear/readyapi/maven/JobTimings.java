@@ -0,0 +1,110 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+/**
+ * Time spent in each phase of a TestJob, in milliseconds - phases that did not happen (for example for
+ * cached results) are -1
+ */
+
+public class JobTimings {
+    public static final String[] PHASES = {"write", "firstByte", "server", "parse", "report"};
+
+    private volatile long write = -1;
+    private volatile long firstByte = -1;
+    private volatile long server = -1;
+    private volatile long parse = -1;
+    private volatile long report = -1;
+
+    /**
+     * @return the time spent uploading the request body
+     */
+
+    public long getWrite() {
+        return write;
+    }
+
+    public void setWrite(long write) {
+        this.write = write;
+    }
+
+    /**
+     * @return the time between the request body being sent and the response headers arriving - for
+     * synchronous runs this includes queueing and running the test on TestEngine
+     */
+
+    public long getFirstByte() {
+        return firstByte;
+    }
+
+    public void setFirstByte(long firstByte) {
+        this.firstByte = firstByte;
+    }
+
+    /**
+     * @return the totalTime reported by TestEngine
+     */
+
+    public long getServer() {
+        return server;
+    }
+
+    public void setServer(long server) {
+        this.server = server;
+    }
+
+    /**
+     * @return the time spent reading and parsing the response
+     */
+
+    public long getParse() {
+        return parse;
+    }
+
+    public void setParse(long parse) {
+        this.parse = parse;
+    }
+
+    /**
+     * @return the time spent adding the result to the JUnit report
+     */
+
+    public long getReport() {
+        return report;
+    }
+
+    public void setReport(long report) {
+        this.report = report;
+    }
+
+    public long get(String phase) {
+        switch (phase) {
+            case "write":
+                return write;
+            case "firstByte":
+                return firstByte;
+            case "server":
+                return server;
+            case "parse":
+                return parse;
+            case "report":
+                return report;
+            default:
+                throw new IllegalArgumentException("Unknown phase " + phase);
+        }
+    }
+}
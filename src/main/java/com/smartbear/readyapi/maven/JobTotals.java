@@ -0,0 +1,71 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import java.util.Arrays;
+
+/**
+ * Phase timings and upload sizes of test jobs that are released as soon as they are reported, like the rows
+ * of data-driven recipes. Only the times are kept - in a growing long[] per phase - so memory use stays
+ * small however many rows a data file has.
+ */
+
+public class JobTotals {
+    private final long[][] times = new long[JobTimings.PHASES.length][4];
+    private final int[] counts = new int[JobTimings.PHASES.length];
+    private int jobs;
+    private long uploadedBytes;
+    private long bytesOnWire;
+
+    public synchronized void add(TestJob job) {
+        jobs++;
+        uploadedBytes += job.getUploadedBytes();
+        bytesOnWire += job.getBytesOnWire();
+
+        for (int c = 0; c < JobTimings.PHASES.length; c++) {
+            long time = job.getTimings().get(JobTimings.PHASES[c]);
+            if (time < 0) {
+                continue;
+            }
+            if (counts[c] == times[c].length) {
+                times[c] = Arrays.copyOf(times[c], counts[c] * 2);
+            }
+            times[c][counts[c]++] = time;
+        }
+    }
+
+    public synchronized int getJobs() {
+        return jobs;
+    }
+
+    public synchronized long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    public synchronized long getBytesOnWire() {
+        return bytesOnWire;
+    }
+
+    /**
+     * @return the times of the phase for all jobs where it was measured, unsorted
+     */
+
+    public synchronized long[] getTimes(String phase) {
+        int index = Arrays.asList(JobTimings.PHASES).indexOf(phase);
+        return Arrays.copyOf(times[index], counts[index]);
+    }
+}
@@ -0,0 +1,84 @@
+package com.smartbear.readyapi.maven;
+
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.shared.model.fileset.FileSet;
+import org.apache.maven.shared.model.fileset.util.FileSetManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Merges the reports written by the shards of a sharded run into a single testengine-report.xml
+ */
+
+@Mojo(name = "merge")
+public class MergeMojo
+        extends AbstractMojo {
+    @Component
+    private MavenProject mavenProject;
+
+    @Parameter(defaultValue = "${basedir}/target/surefire-reports")
+    private File reportTarget;
+
+    @Parameter(defaultValue = "testengine-report-shard*.xml")
+    private String reportIncludes;
+
+    @Parameter(defaultValue = "true")
+    private boolean removeShardReports;
+
+    public void execute() throws MojoExecutionException {
+        FileSet fileSet = new FileSet();
+        fileSet.setDirectory(reportTarget.getAbsolutePath());
+        fileSet.addInclude(reportIncludes);
+
+        String[] files = new FileSetManager().getIncludedFiles(fileSet);
+        if (files.length == 0) {
+            getLog().warn("No reports matching " + reportIncludes + " in " + reportTarget);
+            return;
+        }
+
+        Arrays.sort(files);
+
+        try (JUnitReport report = new JUnitReport()) {
+            report.setTestSuiteName(mavenProject.getName());
+
+            for (String file : files) {
+                getLog().debug("Merging " + file);
+                report.addTestCases(new File(reportTarget, file));
+            }
+
+            report.save(new File(reportTarget, JUnitReports.REPORT_NAME + ".xml"));
+            getLog().info("Merged " + files.length + " reports with " + report.getNoofTestCases() + " testcases");
+
+            if (removeShardReports) {
+                for (String file : files) {
+                    new File(reportTarget, file).delete();
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error merging reports", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Phase timings of all jobs of a run, written as testengine-metrics.json and as testengine-metrics.prom in
+ * the Prometheus textfile format - jobs are listed one by one, data-driven rows only count towards the totals
+ */
+
+public class MetricsReport {
+    public static final String JSON_FILE_NAME = "testengine-metrics.json";
+    public static final String PROMETHEUS_FILE_NAME = "testengine-metrics.prom";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final List<TestJob> jobs;
+    private final JobTotals rows;
+    private final long filterTime;
+    private final long totalTime;
+
+    /**
+     * @param rows       the timings of the rows of data-driven recipes
+     * @param filterTime the time spent filtering recipes - the single pass before any job is run, plus the time
+     *                   spent filtering recipes and rows in memory, summed over all threads
+     * @param totalTime  the time from the first submission until all results were reported
+     */
+
+    public MetricsReport(List<TestJob> jobs, JobTotals rows, long filterTime, long totalTime) {
+        this.jobs = jobs;
+        this.rows = rows;
+        this.filterTime = filterTime;
+        this.totalTime = totalTime;
+    }
+
+    public void log(Log log) {
+        log.info("Job phase timings in ms:");
+        log.info(String.format(Locale.ROOT, "  %-10s %9s %9s %9s %9s", "phase", "p50", "p90", "p99", "max"));
+        for (String phase : JobTimings.PHASES) {
+            long[] values = getValues(phase);
+            if (values.length > 0) {
+                log.info(String.format(Locale.ROOT, "  %-10s %9d %9d %9d %9d", phase,
+                        percentile(values, 0.5), percentile(values, 0.9), percentile(values, 0.99),
+                        values[values.length - 1]));
+            }
+        }
+        log.info("Jobs: " + jobs.size() + ", data-driven rows: " + rows.getJobs());
+        log.info("Filtering: " + filterTime + "ms, run: " + totalTime + "ms");
+    }
+
+    public void save(File directory) throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        saveJson(new File(directory, JSON_FILE_NAME));
+        savePrometheus(new File(directory, PROMETHEUS_FILE_NAME));
+    }
+
+    private void saveJson(File file) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("filterTime", filterTime);
+        root.put("totalTime", totalTime);
+        root.put("rows", rows.getJobs());
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        for (String phase : JobTimings.PHASES) {
+            long[] values = getValues(phase);
+            Map<String, Object> phaseSummary = new LinkedHashMap<>();
+            phaseSummary.put("count", values.length);
+            phaseSummary.put("sum", Arrays.stream(values).sum());
+            for (double quantile : QUANTILES) {
+                phaseSummary.put("p" + Math.round(quantile * 100), percentile(values, quantile));
+            }
+            phaseSummary.put("max", values.length == 0 ? 0 : values[values.length - 1]);
+            summary.put(phase, phaseSummary);
+        }
+        root.put("phases", summary);
+
+        List<Map<String, Object>> jobList = new ArrayList<>();
+        for (TestJob job : jobs) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", job.getName());
+            entry.put("cached", job.isCached());
+            entry.put("uploadedBytes", job.getUploadedBytes());
+            entry.put("bytesOnWire", job.getBytesOnWire());
+            for (String phase : JobTimings.PHASES) {
+                entry.put(phase, job.getTimings().get(phase));
+            }
+            jobList.add(entry);
+        }
+        root.put("jobs", jobList);
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, root);
+    }
+
+    private void savePrometheus(File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            out.print("# HELP testengine_job_phase_seconds Time spent in each phase of a TestEngine job\n");
+            out.print("# TYPE testengine_job_phase_seconds summary\n");
+            for (String phase : JobTimings.PHASES) {
+                long[] values = getValues(phase);
+                for (double quantile : QUANTILES) {
+                    out.print(String.format(Locale.ROOT, "testengine_job_phase_seconds{phase=\"%s\",quantile=\"%s\"} %.3f\n",
+                            phase, quantile, percentile(values, quantile) / 1000.0));
+                }
+                out.print(String.format(Locale.ROOT, "testengine_job_phase_seconds_sum{phase=\"%s\"} %.3f\n",
+                        phase, Arrays.stream(values).sum() / 1000.0));
+                out.print(String.format(Locale.ROOT, "testengine_job_phase_seconds_count{phase=\"%s\"} %d\n",
+                        phase, values.length));
+            }
+
+            out.print("# HELP testengine_filter_seconds Time spent filtering recipes\n");
+            out.print("# TYPE testengine_filter_seconds gauge\n");
+            out.print(String.format(Locale.ROOT, "testengine_filter_seconds %.3f\n", filterTime / 1000.0));
+            out.print("# HELP testengine_run_seconds Time from the first submission until all results were reported\n");
+            out.print("# TYPE testengine_run_seconds gauge\n");
+            out.print(String.format(Locale.ROOT, "testengine_run_seconds %.3f\n", totalTime / 1000.0));
+            out.print("# HELP testengine_jobs Number of jobs in the run, including data-driven rows\n");
+            out.print("# TYPE testengine_jobs gauge\n");
+            out.print("testengine_jobs " + (jobs.size() + rows.getJobs()) + "\n");
+        }
+    }
+
+    /**
+     * @return the sorted values of the phase for all jobs and rows where it was measured
+     */
+
+    private long[] getValues(String phase) {
+        long[] jobValues = jobs.stream().mapToLong(job -> job.getTimings().get(phase)).filter(value -> value >= 0).toArray();
+        long[] rowValues = rows.getTimes(phase);
+
+        long[] values = Arrays.copyOf(jobValues, jobValues.length + rowValues.length);
+        System.arraycopy(rowValues, 0, values, jobValues.length, rowValues.length);
+        Arrays.sort(values);
+        return values;
+    }
+
+    // nearest-rank percentile of sorted values
+    static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+}
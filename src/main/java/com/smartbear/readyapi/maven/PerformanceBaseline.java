@@ -0,0 +1,168 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.smartbear.readyapi.testengine.model.TestCaseResultReport;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import com.smartbear.readyapi.testengine.model.TestStepResultReport;
+import com.smartbear.readyapi.testengine.model.TestSuiteResultReport;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The times of the last runs of each recipe/project (and optionally of each of their steps), used to detect
+ * performance regressions. Times are compared with the median of the recorded runs, so a single slow or
+ * fast run neither triggers nor hides a regression.
+ */
+
+public class PerformanceBaseline {
+    private final File file;
+    private final int runs;
+    private final Properties times = new Properties();
+
+    private PerformanceBaseline(File file, int runs) {
+        this.file = file;
+        this.runs = Math.max(1, runs);
+    }
+
+    /**
+     * @param runs the number of runs to keep for each recipe/project/step
+     */
+
+    public static PerformanceBaseline load(File file, int runs) throws IOException {
+        PerformanceBaseline baseline = new PerformanceBaseline(file, runs);
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                baseline.times.load(in);
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * @return the recorded times, oldest first
+     */
+
+    public synchronized long[] getTimes(String key) {
+        String value = times.getProperty(key);
+        if (value == null || value.isEmpty()) {
+            return new long[0];
+        }
+
+        try {
+            return Arrays.stream(value.split(",")).mapToLong(Long::parseLong).toArray();
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * @return the median of the recorded times, or -1 if there are none
+     */
+
+    public long getMedian(String key) {
+        long[] sorted = getTimes(key);
+        if (sorted.length == 0) {
+            return -1;
+        }
+
+        Arrays.sort(sorted);
+        return sorted.length % 2 == 1 ? sorted[sorted.length / 2] :
+                (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2;
+    }
+
+    /**
+     * @param threshold the allowed increase over the median in percent
+     * @param minDelta  the minimum increase in milliseconds, so short jobs do not trip the threshold with
+     *                  a few milliseconds of jitter
+     * @return a description of the regression, or null if the time is within the threshold or there is no baseline
+     */
+
+    public String check(String key, long time, double threshold, long minDelta) {
+        long median = getMedian(key);
+        if (median < 0 || time - median < minDelta || time <= median * (1 + threshold / 100)) {
+            return null;
+        }
+
+        return String.format(Locale.ROOT, "%dms is %.0f%% above the median of %dms over the last %d runs", time,
+                median == 0 ? 100.0 : (time - median) * 100.0 / median, median, getTimes(key).length);
+    }
+
+    /**
+     * Adds the time of a run, dropping the oldest time if runs times are recorded already
+     */
+
+    public synchronized void record(String key, long time) {
+        long[] previous = getTimes(key);
+        StringBuilder value = new StringBuilder();
+        for (int c = Math.max(0, previous.length - runs + 1); c < previous.length; c++) {
+            value.append(previous[c]).append(',');
+        }
+        times.setProperty(key, value.append(time).toString());
+    }
+
+    public synchronized void save() throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && !dir.exists()) {
+            dir.mkdirs();
+        }
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            times.store(out, "ReadyAPI TestEngine run times of the last " + runs + " runs in milliseconds");
+        }
+    }
+
+    /**
+     * @return the times of the steps in the report by suite / testcase / step name - steps that occur more than
+     * once are added up
+     */
+
+    public static Map<String, Long> getStepTimes(TestJobReport report) {
+        Map<String, Long> stepTimes = new LinkedHashMap<>();
+        if (report.getTestSuiteResultReports() == null) {
+            return stepTimes;
+        }
+
+        for (TestSuiteResultReport suite : report.getTestSuiteResultReports()) {
+            if (suite.getTestCaseResultReports() == null) {
+                continue;
+            }
+            for (TestCaseResultReport testCase : suite.getTestCaseResultReports()) {
+                if (testCase.getTestStepResultReports() == null) {
+                    continue;
+                }
+                for (TestStepResultReport step : testCase.getTestStepResultReports()) {
+                    if (step.getTimeTaken() != null) {
+                        stepTimes.merge(suite.getTestSuiteName() + " / " + testCase.getTestCaseName() + " / " +
+                                step.getTestStepName(), step.getTimeTaken(), Long::sum);
+                    }
+                }
+            }
+        }
+        return stepTimes;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Remembers which recipes in the targetDirectory were filtered from which source content, properties, project
+ * model and filter files, so recipes that have not changed since the last build are neither filtered nor rewritten.
+ * The environment (env.*) and the java.* and user.* system properties change between machines and CI runs, so
+ * they are only part of the hash of the recipes and filter files that mention them.
+ */
+
+public class RecipeFilterCache {
+    public static final String CACHE_FILE_NAME = ".testengine-filter-cache";
+
+    private static final String[] VOLATILE_PREFIXES = {"env.", "java.", "user."};
+
+    private final File cacheFile;
+    private final String inputHash;
+    private final Map<String, String> volatileProperties;
+    private final Properties entries = new Properties();
+
+    private RecipeFilterCache(File cacheFile, String inputHash, Map<String, String> volatileProperties) {
+        this.cacheFile = cacheFile;
+        this.inputHash = inputHash;
+        this.volatileProperties = volatileProperties;
+    }
+
+    /**
+     * @param effectiveProperties all properties that can be used when filtering - any change to them
+     *                            invalidates all cached recipes, as does any change to the model of the project
+     *                            (${project.*} and ${basedir} expressions) or to the content of a filter file.
+     *                            A change to an env.*, java.* or user.* property only invalidates the recipes
+     *                            that mention it, or all recipes if a filter file mentions it
+     * @param filterFiles         the filter files the recipes are filtered with
+     */
+
+    public static RecipeFilterCache load(File targetDirectory, Map<?, ?> effectiveProperties, MavenProject project,
+                                         List<File> filterFiles) throws IOException {
+        RecipeFilterCache cache = create(new File(targetDirectory, CACHE_FILE_NAME), effectiveProperties, project,
+                filterFiles);
+
+        if (cache.cacheFile.exists()) {
+            try (InputStream in = new FileInputStream(cache.cacheFile)) {
+                cache.entries.load(in);
+            }
+        }
+
+        return cache;
+    }
+
+    /**
+     * @return a cache for the specified inputs with the entries of this one, for filtering again in the same
+     * build without reading the cache file again - entries of recipes filtered with other inputs do not match
+     */
+
+    public RecipeFilterCache update(Map<?, ?> effectiveProperties, MavenProject project, List<File> filterFiles)
+            throws IOException {
+        RecipeFilterCache cache = create(cacheFile, effectiveProperties, project, filterFiles);
+        cache.entries.putAll(entries);
+        return cache;
+    }
+
+    private static RecipeFilterCache create(File cacheFile, Map<?, ?> effectiveProperties, MavenProject project,
+                                            List<File> filterFiles) throws IOException {
+        Map<String, String> stableProperties = new TreeMap<>();
+        Map<String, String> volatileProperties = new TreeMap<>();
+        for (Map.Entry<?, ?> entry : effectiveProperties.entrySet()) {
+            String key = String.valueOf(entry.getKey());
+            (isVolatile(key) ? volatileProperties : stableProperties).put(key, String.valueOf(entry.getValue()));
+        }
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        hashProperties(hasher, stableProperties);
+        hashProject(hasher, project);
+        for (File filterFile : filterFiles) {
+            hasher.putString(filterFile.getAbsolutePath(), StandardCharsets.UTF_8).putByte((byte) 0);
+            if (filterFile.exists()) {
+                byte[] content = Files.toByteArray(filterFile);
+                hasher.putBytes(content);
+                hashProperties(hasher, getMentioned(volatileProperties, content));
+            }
+            hasher.putByte((byte) 0);
+        }
+
+        return new RecipeFilterCache(cacheFile, hasher.hash().toString(), volatileProperties);
+    }
+
+    public String hash(File source) throws IOException {
+        byte[] content = Files.toByteArray(source);
+        Hasher hasher = Hashing.sha256().newHasher().putBytes(content);
+        hashProperties(hasher, getMentioned(volatileProperties, content));
+        return hasher.hash().toString() + ":" + inputHash;
+    }
+
+    public boolean isUpToDate(String path, String hash, File target) {
+        return target.exists() && hash.equals(entries.getProperty(path));
+    }
+
+    public void put(String path, String hash) {
+        entries.setProperty(path, hash);
+    }
+
+    public void save() throws IOException {
+        try (OutputStream out = new FileOutputStream(cacheFile)) {
+            entries.store(out, "ReadyAPI TestEngine filtered recipes");
+        }
+    }
+
+    private static boolean isVolatile(String key) {
+        for (String prefix : VOLATILE_PREFIXES) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the properties whose name occurs in the content, sorted by name - this covers ${name} and @name@
+     * expressions, at the cost of sometimes including a property that is not used
+     */
+
+    private static Map<String, String> getMentioned(Map<String, String> properties, byte[] content) {
+        Map<String, String> mentioned = new TreeMap<>();
+        if (properties.isEmpty()) {
+            return mentioned;
+        }
+
+        String text = new String(content, StandardCharsets.UTF_8);
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (text.contains(entry.getKey())) {
+                mentioned.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return mentioned;
+    }
+
+    private static void hashProperties(Hasher hasher, Map<String, String> sorted) {
+        for (Map.Entry<String, String> entry : sorted.entrySet()) {
+            hasher.putString(entry.getKey(), StandardCharsets.UTF_8).putByte((byte) 0)
+                    .putString(entry.getValue(), StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+    }
+
+    /**
+     * Hashes the effective model of the project, which holds every value a ${project.*} expression can
+     * resolve to, and the base directory that is not part of the model
+     */
+
+    private static void hashProject(Hasher hasher, MavenProject project) throws IOException {
+        if (project == null) {
+            return;
+        }
+
+        hasher.putString(String.valueOf(project.getBasedir()), StandardCharsets.UTF_8).putByte((byte) 0);
+        if (project.getModel() != null) {
+            StringWriter model = new StringWriter();
+            new MavenXpp3Writer().write(model, project.getModel());
+            hasher.putString(model.toString(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteSource;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Local cache of passed TestJobReports keyed by a hash of the submitted payload and the execute uri, so a
+ * recipe or project that passed recently with exactly the same input does not have to be run again
+ */
+
+public class ResultCache {
+    private static final ObjectWriter WRITER = new ObjectMapper().writerFor(TestJobReport.class);
+    private static final String SUFFIX = ".json";
+
+    private final File directory;
+    private final long ttl;
+    private final int maxEntries;
+    private final Log log;
+
+    /**
+     * @param ttl        the time in milliseconds a cached result can be reused
+     * @param maxEntries the maximum number of results to keep, the oldest results are evicted first
+     */
+
+    public ResultCache(File directory, long ttl, int maxEntries, Log log) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.log = log;
+    }
+
+    public String key(ByteSource payload, String uri) throws IOException {
+        return Hashing.sha256().newHasher()
+                .putString(uri, StandardCharsets.UTF_8)
+                .putBytes(payload.hash(Hashing.sha256()).asBytes())
+                .hash().toString();
+    }
+
+    /**
+     * @return the cached report or null if there is none, it has expired or it cannot be read - unreadable
+     * entries are removed, so the job is run again and cached anew
+     */
+
+    public TestJobReport get(String key) {
+        File file = new File(directory, key + SUFFIX);
+        if (!file.exists() || isExpired(file)) {
+            return null;
+        }
+
+        try (InputStream in = new FileInputStream(file)) {
+            return TestJobReportReader.read(in, false);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Removing unreadable cached result " + file + ": " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes the report to a temporary file that is then moved in place, so other builds sharing the
+     * directory never read a partly written entry
+     */
+
+    public synchronized void put(String key, TestJobReport report) throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        File temp = File.createTempFile(key + "-", ".tmp", directory);
+        try {
+            WRITER.writeValue(temp, report);
+            Files.move(temp.toPath(), new File(directory, key + SUFFIX).toPath(), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Removes expired results and the oldest results exceeding maxEntries
+     *
+     * @return the number of removed results
+     */
+
+    public synchronized int evict() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+        if (files == null) {
+            return 0;
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).reversed());
+
+        int evicted = 0;
+        for (int c = 0; c < files.length; c++) {
+            if ((c >= maxEntries || isExpired(files[c])) && files[c].delete()) {
+                evicted++;
+            }
+        }
+
+        return evicted;
+    }
+
+    private boolean isExpired(File file) {
+        return System.currentTimeMillis() - file.lastModified() > ttl;
+    }
+}
@@ -16,68 +16,107 @@ package com.smartbear.readyapi.maven;
  * limitations under the License.
  */
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
 import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
 import com.smartbear.readyapi.testengine.model.TestCaseResultReport;
 import com.smartbear.readyapi.testengine.model.TestJobReport;
 import com.smartbear.readyapi.testengine.model.TestStepResultReport;
 import com.smartbear.readyapi.testengine.model.TestSuiteResultReport;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpHost;
-import org.apache.http.auth.AuthScope;
-import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.AuthCache;
-import org.apache.http.client.CredentialsProvider;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.entity.GzipCompressingEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpDelete;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.HttpHostConnectException;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.FileEntity;
-import org.apache.http.impl.auth.BasicScheme;
-import org.apache.http.impl.client.BasicAuthCache;
-import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.apache.maven.shared.filtering.MavenFilteringException;
+import org.apache.maven.shared.filtering.MavenReaderFilter;
+import org.apache.maven.shared.filtering.MavenReaderFilterRequest;
 import org.apache.maven.shared.filtering.MavenResourcesExecution;
 import org.apache.maven.shared.filtering.MavenResourcesFiltering;
-import org.apache.maven.shared.model.fileset.FileSet;
-import org.apache.maven.shared.model.fileset.util.FileSetManager;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-
-@Mojo(name = "run")
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Mojo(name = "run", threadSafe = true)
 public class RunMojo
         extends AbstractMojo {
+    private static final long UNAVAILABLE_ENDPOINT_PERIOD = 30000;
+    private static final long MAX_RETRY_DELAY = 120000;
+    // not defined in HttpStatus of httpcore 4.4
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    static final String TESTENGINE_PROPERTIES = "testengine.properties";
+
     @Component
     private MavenResourcesFiltering resourcesFiltering;
 
+    @Component
+    private MavenReaderFilter readerFilter;
+
     @Component
     private MavenProject mavenProject;
 
@@ -90,6 +129,9 @@ public class RunMojo
     @Parameter
     private String environment;
 
+    @Parameter(property = "readyapi-testengine.environments")
+    private List<String> environments;
+
     @Parameter( defaultValue = "true" )
     private boolean async;
 
@@ -99,40 +141,209 @@ public class RunMojo
     @Parameter
     private boolean disableFiltering;
 
+    @Parameter(property = "readyapi-testengine.filterInMemory")
+    private boolean filterInMemory;
+
+    @Parameter(defaultValue = "${project.build.sourceEncoding}", property = "readyapi-testengine.encoding")
+    private String encoding;
+
+    @Parameter
+    private boolean writeFilteredRecipes;
+
     @Parameter(defaultValue = "true")
     private boolean failOnFailures;
 
-    @Parameter(required = true, property = "readyapi-testengine.username")
+    @Parameter(defaultValue = "0", property = "readyapi-testengine.maxFailures")
+    private int maxFailures;
+
+    @Parameter(property = "readyapi-testengine.username")
     private String username;
 
-    @Parameter(required = true, property = "readyapi-testengine.password")
+    @Parameter(property = "readyapi-testengine.password")
     private String password;
 
-    @Parameter(required = true, property = "readyapi-testengine.endpoint")
+    @Parameter(property = "readyapi-testengine.endpoint")
     private String server;
 
+    @Parameter
+    private List<Endpoint> endpoints;
+
     @Parameter( property = "readyapi-testengine.hostAndPort")
     private String hostAndPort;
 
+    @Parameter(property = "readyapi-testengine.hostAndPorts")
+    private List<String> hostAndPorts;
+
     @Parameter(defaultValue = "${project.basedir}/src/test/resources/test-projects", required = true)
     private File projectsDirectory;
 
     @Parameter(defaultValue = "${project.basedir}/target/test-recipes", required = true)
     private File targetDirectory;
 
+    @Parameter
+    private List<String> includes;
+
+    @Parameter
+    private List<String> excludes;
+
+    @Parameter(defaultValue = "true")
+    private boolean detectTestFiles;
+
+    @Parameter(property = "readyapi-testengine.discoveryIndex")
+    private boolean discoveryIndex;
+
+    @Parameter(defaultValue = "${project.build.directory}/testengine-discovery-index.json")
+    private File discoveryIndexFile;
+
     @Parameter(defaultValue = "${basedir}/target/surefire-reports")
     private File reportTarget;
 
-    private CloseableHttpClient httpClient;
-    private HttpClientContext httpContext;
-    private HttpHost httpHost;
+    @Parameter(defaultValue = "1", property = "readyapi-testengine.concurrency")
+    private int concurrency;
+
+    @Parameter(defaultValue = "5")
+    private int maxRetries;
+
+    @Parameter(defaultValue = "1000")
+    private long retryInterval;
+
+    @Parameter(property = "readyapi-testengine.poll")
+    private boolean poll;
+
+    @Parameter(defaultValue = "1000")
+    private long pollInterval;
+
+    @Parameter(defaultValue = "30000")
+    private long maxPollInterval;
+
+    @Parameter(defaultValue = "0")
+    private long pollTimeout;
+
+    @Parameter(property = "readyapi-testengine.skipPassedStepMessages")
+    private boolean skipPassedStepMessages;
+
+    @Parameter
+    private boolean splitReportsBySuite;
+
+    @Parameter(property = "readyapi-testengine.compressRequests")
+    private boolean compressRequests;
+
+    @Parameter(defaultValue = "65536")
+    private long compressionThreshold;
+
+    @Parameter(property = "readyapi-testengine.scheduleByDuration")
+    private boolean scheduleByDuration;
+
+    @Parameter(defaultValue = "${project.build.directory}/testengine-durations.properties")
+    private File durationHistoryFile;
+
+    @Parameter(defaultValue = "1", property = "readyapi-testengine.shardIndex")
+    private int shardIndex;
+
+    @Parameter(defaultValue = "1", property = "readyapi-testengine.shardCount")
+    private int shardCount;
+
+    @Parameter(property = "readyapi-testengine.shardHistoryFile")
+    private File shardHistoryFile;
+
+    @Parameter(property = "readyapi-testengine.writeMetrics")
+    private boolean writeMetrics;
+
+    @Parameter(defaultValue = "${project.build.directory}")
+    private File metricsDirectory;
+
+    @Parameter(property = "readyapi-testengine.resultCache")
+    private boolean resultCache;
+
+    @Parameter(defaultValue = "${project.build.directory}/testengine-result-cache")
+    private File resultCacheDirectory;
+
+    @Parameter(defaultValue = "60")
+    private long resultCacheTtl;
+
+    @Parameter(defaultValue = "1000")
+    private int resultCacheMaxEntries;
+
+    @Parameter(defaultValue = "100")
+    private int maxPendingRows;
+
+    @Parameter(property = "readyapi-testengine.profileSteps")
+    private boolean profileSteps;
+
+    @Parameter(defaultValue = "20")
+    private int profileTopSteps;
+
+    @Parameter(property = "readyapi-testengine.performanceGate")
+    private boolean performanceGate;
+
+    @Parameter(defaultValue = "${project.basedir}/testengine-baseline.properties")
+    private File performanceBaselineFile;
+
+    @Parameter(defaultValue = "5")
+    private int performanceBaselineRuns;
+
+    @Parameter(defaultValue = "50")
+    private double performanceThreshold;
+
+    @Parameter(defaultValue = "100")
+    private long performanceMinDelta;
+
+    @Parameter
+    private boolean performanceGateSteps;
+
+    @Parameter(defaultValue = "true")
+    private boolean failOnPerformanceRegressions;
+
+    @Parameter(property = "readyapi-testengine.updatePerformanceBaseline")
+    private boolean updatePerformanceBaseline;
+
+    @Parameter(property = "readyapi-testengine.acceptPerformanceBaseline")
+    private boolean acceptPerformanceBaseline;
+
+    @Parameter(property = "readyapi-testengine.sharedSession")
+    private boolean sharedSession;
+
+    @Parameter(property = "readyapi-testengine.aggregateReport")
+    private boolean aggregateReport;
+
+    @Parameter(defaultValue = "${session.executionRootDirectory}/target")
+    private File aggregateReportDirectory;
+
+    private Map configuredProperties;
+    private boolean propertiesRead;
+    private TestEngineConnection connection;
+    private boolean connectionShared;
+    private List<File> savedReports;
+    private RecipeFilterCache filterCache;
+
+    // the jobs of the files that are not data-driven until they are reported, and the history to record them in
+    private List<TestJob> unreportedJobs = Collections.emptyList();
+    private DurationHistory recordedHistory;
+
+    // jobs being submitted, aborted when maxFailures is reached
+    private final Set<TestJob> runningJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger failures = new AtomicInteger();
+    // nanoseconds spent filtering recipes and data-driven rows in memory
+    private final AtomicLong inMemoryFilterTime = new AtomicLong();
+    private JobTotals rowTotals;
+    private volatile boolean stopped;
+    private int skipCount;
+    private StepProfile stepProfile;
+    private List<Target> targets;
+    private TargetComparison targetComparison;
+    private PerformanceBaseline performanceBaseline;
+    private int regressionCount;
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        try {
-            if( mavenSession.getSystemProperties().getProperty("skipApiTests") != null ){
-                return;
-            }
+        if( isSkipped() ){
+            return;
+        }
 
+        TestEngineSession session = sharedSession || aggregateReport ?
+                TestEngineSession.get(mavenSession, getLog()) : null;
+        savedReports = null;
+
+        try {
             List<String> files = getIncludedFiles();
 
             if (files.isEmpty() ) {
@@ -141,78 +352,269 @@ public class RunMojo
             }
 
             readProperties();
-            initHttpClient();
+            if (sharedSession) {
+                connection = session.getConnection(getEndpoints(), concurrency, UNAVAILABLE_ENDPOINT_PERIOD, getLog());
+                connectionShared = true;
+            } else {
+                initHttpClient();
+            }
 
-            if( properties == null ){
-                properties = Maps.newConcurrentMap();
+            try {
+                runTests(files);
+            } finally {
+                closeHttpClient();
             }
+        } catch( MojoFailureException | MojoExecutionException e ){
+            throw e;
+        }
+        catch (Exception e) {
+            throw new MojoExecutionException("Error running tests", e);
+        } finally {
+            if (session != null) {
+                session.finished(mavenProject, savedReports, aggregateReport ?
+                        new File(aggregateReportDirectory, TestEngineSession.REPORT_NAME + ".xml") : null, getLog());
+            }
+        }
+    }
+
+    /**
+     * Runs the files with the HttpClient and properties set up before, writes the reports and logs a
+     * summary - the watch goal calls this again for every change
+     */
+
+    void runTests(List<String> files) throws Exception {
+        DurationHistory history = scheduleByDuration ? DurationHistory.load(durationHistoryFile) : null;
+        boolean recordDurations = history != null;
+
+        if (shardCount > 1) {
+            if (shardIndex < 1 || shardIndex > shardCount) {
+                throw new MojoExecutionException("shardIndex must be between 1 and " + shardCount);
+            }
+
+            // the split must be the same on every agent, so it never uses the history the agents record
+            // their own run times in - only a shared history that no shard writes to
+            if (shardHistoryFile != null) {
+                if (history != null && shardHistoryFile.getAbsoluteFile().equals(durationHistoryFile.getAbsoluteFile())) {
+                    getLog().info("Not recording run times, durationHistoryFile is the shardHistoryFile");
+                    recordDurations = false;
+                }
+                files = DurationHistory.load(shardHistoryFile).shard(files, shardIndex, shardCount);
+            } else {
+                files = DurationHistory.shardByPath(files, shardIndex, shardCount);
+            }
+            getLog().info("Running shard " + shardIndex + " of " + shardCount + " with " + files.size() + " files");
+        }
+
+        failures.set(0);
+        stopped = false;
+        skipCount = 0;
+        inMemoryFilterTime.set(0);
+        rowTotals = new JobTotals();
+
+        JUnitReports reports = async && !poll ? null : new JUnitReports(mavenProject.getName(), splitReportsBySuite,
+                shardCount > 1 ? JUnitReports.REPORT_NAME + "-shard" + shardIndex : JUnitReports.REPORT_NAME);
 
-            JUnitReport report = async ? null : new JUnitReport();
+        stepProfile = profileSteps && reports != null ? new StepProfile() : null;
 
-            int recipeCount = 0;
-            int projectCount = 0;
-            int failCount = 0;
+        targets = Target.of(environment, environments, hostAndPort, hostAndPorts);
+        targetComparison = targets.size() > 1 && reports != null ? new TargetComparison(targets) : null;
+        if (targets.size() > 1) {
+            getLog().info("Running every test against " + targets.size() + " targets: " + targets);
+        }
+        performanceBaseline = performanceGate && reports != null ?
+                PerformanceBaseline.load(performanceBaselineFile, performanceBaselineRuns) : null;
+        regressionCount = 0;
+
+        int recipeCount = 0;
+        int projectCount = 0;
+        int rowCount = 0;
+        int failCount = 0;
+
+        List<TestJob> jobs = new ArrayList<>();
+        List<String> dataDrivenRecipes = new ArrayList<>();
+        long predictedDuration = 0;
+        long filterTime = 0;
+        long actualDuration;
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, concurrency));
+        ResultCache cache = resultCache && reports != null ?
+                new ResultCache(resultCacheDirectory, resultCacheTtl * 60 * 1000, resultCacheMaxEntries, getLog()) :
+                null;
+
+        try {
+            if (!disableFiltering && (!filterInMemory || writeFilteredRecipes)) {
+                long filterStart = System.currentTimeMillis();
+                filterRecipes(files);
+                filterTime = System.currentTimeMillis() - filterStart;
+            }
 
             for (String file : files) {
                 String fileName = file.toLowerCase();
-                CloseableHttpResponse response;
-
-                File f = new File(projectsDirectory,file);
+                File f = new File(projectsDirectory, file);
 
+                ByteSource payload;
+                boolean recipe;
                 if (fileName.endsWith(".json")) {
                     recipeCount++;
-                    response = runJsonRecipe(f);
+                    if (DataRows.find(f) != null) {
+                        if (!disableFiltering) {
+                            dataDrivenRecipes.add(file);
+                            continue;
+                        }
+                        getLog().warn("Ignoring the data file of " + file + " since filtering is disabled");
+                    }
+                    payload = targets.size() > 1 ? getSharedRecipePayload(file, f) : getRecipePayload(file, f);
+                    recipe = true;
                 } else if (fileName.endsWith(".xml")) {
                     projectCount++;
-                    response = runXmlProject(f);
+                    payload = targets.size() > 1 ? new SharedFileSource(f) : Files.asByteSource(f);
+                    recipe = false;
                 } else {
                     getLog().warn("Unexpected filename: " + fileName);
                     continue;
                 }
 
-                try{
-                    handleResponse(response, report, file);
-                }
-                catch (MojoFailureException exception)
-                {
-                    failCount++;
+                // the jobs of a file are submitted one after another, so it runs on all targets at the same time
+                for (Target target : targets) {
+                    jobs.add(new TestJob(getJobName(file, target), file, payload, recipe, target));
                 }
             }
 
-            getLog().info("ReadyAPI TestEngine Maven Plugin");
-            getLog().info("--------------------------------------");
-            getLog().info("Recipes run: " + recipeCount );
-            getLog().info("Projects run: " + projectCount );
-            getLog().info("Failures: " + failCount );
-
-            if( report != null ) {
-                report.setTestSuiteName(mavenProject.getName());
-                report.setNoofFailuresInTestSuite(failCount);
+            List<TestJob> schedule = jobs;
+            if (scheduleByDuration) {
+                schedule = history.longestFirst(jobs);
+                predictedDuration = history.predictTotalDuration(schedule, poll ? schedule.size() : concurrency);
+            }
 
-                if (!reportTarget.exists()) {
-                    reportTarget.mkdirs();
+            long startTime = System.currentTimeMillis();
+            for (TestJob job : schedule) {
+                job.setResult(executor.submit(() -> runTestJob(job, cache)));
+            }
+            unreportedJobs = jobs;
+            recordedHistory = recordDurations ? history : null;
+
+            // the rows of data-driven recipes are queued right behind these jobs, and reported after them
+            for (String file : dataDrivenRecipes) {
+                if (stopped) {
+                    failCount += reportJobs(executor, reports, cache);
+                    reportSkipped(reports == null ? null : reports.getReport(file), file);
+                    continue;
                 }
 
-                report.save(new File(reportTarget, "testengine-report.xml"));
+                int[] counts = runDataDrivenRecipe(file, executor, reports, cache);
+                rowCount += counts[0];
+                failCount += counts[1];
+            }
+            failCount += reportJobs(executor, reports, cache);
 
-                if (failCount > 0 && failOnFailures) {
-                    throw new MojoFailureException(failCount + " failures during test execution");
-                }
+            actualDuration = System.currentTimeMillis() - startTime;
+
+            if (recordDurations) {
+                history.save();
+            }
+
+            if (performanceBaseline != null && (updatePerformanceBaseline || acceptPerformanceBaseline)) {
+                performanceBaseline.save();
             }
 
-        } catch( MojoFailureException e ){
+            if (cache != null) {
+                cache.evict();
+            }
+        } catch (Exception e) {
+            // abort the submissions still in progress instead of leaving them running on TestEngine
+            stopped = true;
+            for (TestJob job : runningJobs) {
+                job.skip();
+            }
             throw e;
+        } finally {
+            executor.shutdownNow();
+            unreportedJobs = Collections.emptyList();
+
+            // also written when the run was aborted, so the results of the jobs that finished are kept
+            if (reports != null) {
+                savedReports = reports.save(reportTarget);
+            }
         }
-        catch (Exception e) {
-            throw new MojoExecutionException("Error running tests", e);
+
+        getLog().info("ReadyAPI TestEngine Maven Plugin");
+        getLog().info("--------------------------------------");
+        getLog().info("Recipes run: " + recipeCount );
+        getLog().info("Projects run: " + projectCount );
+        if (!dataDrivenRecipes.isEmpty()) {
+            getLog().info("Data rows run: " + rowCount);
+        }
+        getLog().info("Failures: " + failCount );
+        if (skipCount > 0) {
+            getLog().info("Skipped: " + skipCount);
+        }
+        if (performanceBaseline != null) {
+            getLog().info("Performance regressions: " + regressionCount);
+        }
+        getLog().info("Concurrency limit: " + connection.getConcurrencyLimiter().getLimit());
+
+        if (scheduleByDuration) {
+            getLog().info("Duration: " + actualDuration + "ms (predicted " + predictedDuration + "ms)");
+        }
+
+        if (writeMetrics) {
+            MetricsReport metrics = new MetricsReport(jobs, rowTotals,
+                    filterTime + TimeUnit.NANOSECONDS.toMillis(inMemoryFilterTime.get()), actualDuration);
+            metrics.log(getLog());
+            metrics.save(metricsDirectory);
+        }
+
+        if (targetComparison != null) {
+            targetComparison.log(getLog(), 5);
+        }
+
+        if (stepProfile != null) {
+            stepProfile.log(getLog(), Math.min(profileTopSteps, 10));
+            stepProfile.save(reportTarget, shardCount > 1 ? StepProfile.NAME + "-shard" + shardIndex : StepProfile.NAME,
+                    profileTopSteps);
+        }
+
+        if (compressRequests) {
+            long uploadedBytes = rowTotals.getUploadedBytes();
+            long bytesOnWire = rowTotals.getBytesOnWire();
+            for (TestJob job : jobs) {
+                uploadedBytes += job.getUploadedBytes();
+                bytesOnWire += job.getBytesOnWire();
+            }
+            getLog().info("Uploaded: " + uploadedBytes + " bytes, " + bytesOnWire + " bytes on the wire");
+        }
+
+        if( reports != null ) {
+            if (failCount > 0 && failOnFailures) {
+                throw new MojoFailureException(failCount + " failures during test execution" + (stopped ?
+                        ", " + skipCount + " tests skipped after reaching maxFailures" : ""));
+            }
+
+            if (regressionCount > 0 && failOnPerformanceRegressions) {
+                throw new MojoFailureException(regressionCount + " performance regressions compared with " +
+                        performanceBaselineFile.getName());
+            }
         }
     }
 
-    private void readProperties() throws IOException {
-        File testengineProperties = new File(projectsDirectory, "testengine.properties");
+    /**
+     * Reads testengine.properties in the projectsDirectory, with the properties of the configuration section
+     * taking precedence - can be called again to pick up changes of the file
+     */
+
+    void readProperties() throws IOException {
+        if (!propertiesRead) {
+            configuredProperties = properties;
+            propertiesRead = true;
+        }
+
+        properties = configuredProperties;
+
+        File testengineProperties = new File(projectsDirectory, TESTENGINE_PROPERTIES);
         if( testengineProperties.exists()){
             Properties props = new Properties();
-            props.load( new FileInputStream( testengineProperties ));
+            try (InputStream in = new FileInputStream(testengineProperties)) {
+                props.load(in);
+            }
             getLog().debug( "Read " + props.size() + " properties from testengine.properties");
 
             // override with properties in config section
@@ -222,164 +624,1212 @@ public class RunMojo
 
             properties = props;
         }
+
+        if( properties == null ){
+            properties = Maps.newConcurrentMap();
+        }
     }
 
-    private List<String> getIncludedFiles() {
+    boolean isSkipped() {
+        return getSystemProperties().getProperty("skipApiTests") != null;
+    }
 
-        FileSetManager fileSetManager = new FileSetManager();
+    /**
+     * @return the system properties of the build - the only parts of the MavenSession used besides handing it
+     * to maven-filtering, so benchmarks can run the mojo without a session
+     */
 
-        FileSet fileSet = new FileSet();
-        fileSet.setDirectory(projectsDirectory.getAbsolutePath());
-        fileSet.addInclude("**/*.json");
-        fileSet.addInclude("**/*.xml");
+    Properties getSystemProperties() {
+        return mavenSession.getSystemProperties();
+    }
 
-        return Arrays.asList(fileSetManager.getIncludedFiles( fileSet ));
+    Properties getUserProperties() {
+        return mavenSession.getUserProperties();
     }
 
-    private void handleResponse(CloseableHttpResponse response, JUnitReport report, String name) throws IOException, MojoFailureException {
+    File getProjectsDirectory() {
+        return projectsDirectory;
+    }
 
-        getLog().debug("Response status: " + response.getStatusLine());
-        InputStreamReader inputStreamReader = new InputStreamReader(response.getEntity().getContent());
-        String responseBody = CharStreams.toString(inputStreamReader);
-        response.close();
+    boolean isAsync() {
+        return async && !poll;
+    }
 
-        getLog().debug("Response body:" + responseBody);
+    void setAsync(boolean async) {
+        this.async = async;
+    }
 
-        if( report != null ) {
-            ObjectMapper mapper = new ObjectMapper()
-                    .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-            TestJobReport result = mapper.readerFor(TestJobReport.class).readValue(responseBody);
-            if (result.getStatus() == TestJobReport.StatusEnum.FAILED) {
+    /**
+     * @return the encoding recipes and data files are read, filtered and submitted in - the platform default if
+     * neither encoding nor project.build.sourceEncoding is set
+     */
 
-                String message = logErrorsToConsole(result);
-                report.addTestCaseWithFailure(name, result.getTotalTime(),
-                    message, "<missing stacktrace>", new HashMap<String, String>(properties));
+    Charset getEncoding() {
+        return encoding == null ? Charset.defaultCharset() : Charset.forName(encoding);
+    }
 
-                throw new MojoFailureException("Test Execution Failed");
-            } else {
-                report.addTestCase(name, result.getTotalTime(), new HashMap<String, String>(properties));
-            }
-        }
+    // the setters below stand in for the injection of the parameters when the mojo runs without Maven, as in
+    // the benchmarks and the load harness
+
+    void setResourcesFiltering(MavenResourcesFiltering resourcesFiltering) {
+        this.resourcesFiltering = resourcesFiltering;
     }
 
-    private String logErrorsToConsole(TestJobReport result) {
+    void setReaderFilter(MavenReaderFilter readerFilter) {
+        this.readerFilter = readerFilter;
+    }
 
-        List<String> messages = new ArrayList<>();
+    void setMavenProject(MavenProject mavenProject) {
+        this.mavenProject = mavenProject;
+    }
 
-        for( TestSuiteResultReport testSuiteResultReport : result.getTestSuiteResultReports()){
-            for(TestCaseResultReport testCaseResultReport : testSuiteResultReport.getTestCaseResultReports()){
-                for(TestStepResultReport stepResultReport : testCaseResultReport.getTestStepResultReports()){
-                    if( stepResultReport.getAssertionStatus() == TestStepResultReport.AssertionStatusEnum.FAIL){
-                        getLog().error("Failed " + testSuiteResultReport.getTestSuiteName() + " / " +
-                                testCaseResultReport.getTestCaseName() + " / " + stepResultReport.getTestStepName());
-                        for( String message : stepResultReport.getMessages()){
-                            messages.add( message );
-                            getLog().error( "- " + message);
-                        }
-                    }
-                }
-            }
-        }
+    void setProperties(Map properties) {
+        this.properties = properties;
+    }
 
-        return Arrays.toString( messages.toArray());
+    void setDisableFiltering(boolean disableFiltering) {
+        this.disableFiltering = disableFiltering;
     }
 
-    private CloseableHttpResponse runXmlProject(File file) throws IOException {
-        getLog().info("Executing project " + file.getName());
+    void setFilterInMemory(boolean filterInMemory) {
+        this.filterInMemory = filterInMemory;
+    }
 
-        HttpPost httpPost = new HttpPost(buildExecuteUri("/testjobs"));
-        httpPost.setEntity(new FileEntity(file, ContentType.APPLICATION_XML));
+    void setFailOnFailures(boolean failOnFailures) {
+        this.failOnFailures = failOnFailures;
+    }
 
-        return httpClient.execute(httpHost, httpPost, httpContext);
+    void setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
     }
 
-    private String buildExecuteUri(String path) throws UnsupportedEncodingException {
-        String uri = server + "/api/v1" + path + "?async=" + async;
-        if( environment != null ){
-            uri += "&environment=" + URLEncoder.encode(environment, StandardCharsets.UTF_8.toString());
-        }
+    void setUsername(String username) {
+        this.username = username;
+    }
 
-        if (hostAndPort != null) {
-            uri += "&hostAndPort=" + URLEncoder.encode(hostAndPort, StandardCharsets.UTF_8.toString());
-        }
+    void setPassword(String password) {
+        this.password = password;
+    }
 
-        if (callback != null) {
-            uri += "&callback=" + URLEncoder.encode(callback, StandardCharsets.UTF_8.toString());
-        }
-        return uri;
+    void setServer(String server) {
+        this.server = server;
     }
 
-    private CloseableHttpResponse runJsonRecipe(File file) throws IOException, MavenFilteringException {
+    void setProjectsDirectory(File projectsDirectory) {
+        this.projectsDirectory = projectsDirectory;
+    }
 
-        if( !disableFiltering) {
-            file = filterRecipe(file);
-        }
+    void setTargetDirectory(File targetDirectory) {
+        this.targetDirectory = targetDirectory;
+    }
 
-        getLog().info("Running recipe " + file.getName());
+    void setDetectTestFiles(boolean detectTestFiles) {
+        this.detectTestFiles = detectTestFiles;
+    }
 
-        HttpPost httpPost = new HttpPost(buildExecuteUri("/testjobs/recipe"));
-        httpPost.setEntity(new FileEntity(file, ContentType.APPLICATION_JSON));
+    void setReportTarget(File reportTarget) {
+        this.reportTarget = reportTarget;
+    }
 
-        return httpClient.execute(httpHost, httpPost, httpContext);
+    void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
     }
 
-    private File filterRecipe(File file) throws MavenFilteringException {
-        if (!targetDirectory.exists()) {
-            targetDirectory.mkdirs();
-        }
+    void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
 
-        Resource fileResource = new Resource();
-        fileResource.setDirectory(projectsDirectory.getAbsolutePath());
+    void setRetryInterval(long retryInterval) {
+        this.retryInterval = retryInterval;
+    }
 
-        String filename = file.getAbsolutePath().substring(projectsDirectory.getAbsolutePath().length());
+    void setPoll(boolean poll) {
+        this.poll = poll;
+    }
 
-        fileResource.addInclude(filename);
-        fileResource.setFiltering(true);
+    void setPollInterval(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
 
-        MavenResourcesExecution resourcesExecution = new MavenResourcesExecution();
-        resourcesExecution.setOutputDirectory(targetDirectory);
-        resourcesExecution.setResources(Lists.newArrayList(fileResource));
-        resourcesExecution.setOverwrite(true);
-        resourcesExecution.setSupportMultiLineFiltering(true);
-        resourcesExecution.setEncoding(Charset.defaultCharset().toString());
+    void setMaxPollInterval(long maxPollInterval) {
+        this.maxPollInterval = maxPollInterval;
+    }
 
-        if (properties != null && !properties.isEmpty()) {
-            Properties props = new Properties();
-            props.putAll(properties);
-            getLog().debug("Adding additional properties: " + properties.toString());
-            resourcesExecution.setAdditionalProperties(props);
-        }
+    void setSkipPassedStepMessages(boolean skipPassedStepMessages) {
+        this.skipPassedStepMessages = skipPassedStepMessages;
+    }
 
-        resourcesExecution.setMavenProject(mavenProject);
-        resourcesExecution.setMavenSession(mavenSession);
-        resourcesExecution.setUseDefaultFilterWrappers(true);
+    void setCompressRequests(boolean compressRequests) {
+        this.compressRequests = compressRequests;
+    }
 
-        resourcesFiltering.filterResources(resourcesExecution);
+    void setCompressionThreshold(long compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    void setDurationHistoryFile(File durationHistoryFile) {
+        this.durationHistoryFile = durationHistoryFile;
+    }
+
+    void setShardIndex(int shardIndex) {
+        this.shardIndex = shardIndex;
+    }
+
+    void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    void setWriteMetrics(boolean writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
+    void setMetricsDirectory(File metricsDirectory) {
+        this.metricsDirectory = metricsDirectory;
+    }
+
+    void setMaxPendingRows(int maxPendingRows) {
+        this.maxPendingRows = maxPendingRows;
+    }
 
-        return new File(targetDirectory, filename);
+    void setProfileSteps(boolean profileSteps) {
+        this.profileSteps = profileSteps;
+    }
+
+    void setProfileTopSteps(int profileTopSteps) {
+        this.profileTopSteps = profileTopSteps;
+    }
+
+    List<String> getIncludedFiles() throws IOException {
+        TestDiscovery discovery = new TestDiscovery(projectsDirectory,
+                includes == null || includes.isEmpty() ? TestDiscovery.DEFAULT_INCLUDES : includes,
+                excludes == null ? Collections.<String>emptyList() : excludes, detectTestFiles, getLog());
+
+        return discovery.discover(discoveryIndex ? discoveryIndexFile : null);
     }
 
     /**
-     * Sets up HttpClient with preemptive basic authentication
+     * Waits for all asynchronously submitted jobs to finish and replaces the submission
+     * result of each job with its final report - when maxFailures is reached polling stops
+     * and the jobs still running are cancelled and skipped
      */
 
-    private void initHttpClient() throws MalformedURLException {
+    private void pollResults(List<TestJob> jobs, ExecutorService executor) throws Exception {
+        List<TestJobReport> submitted = new ArrayList<>();
+        Map<String, TestJob> jobsById = new HashMap<>();
+        TestJobPoller poller = new TestJobPoller(testjobId -> fetchReport(jobsById.get(testjobId)),
+                pollInterval, maxPollInterval, pollTimeout, getLog());
+        poller.stopWhen(() -> stopped);
+        poller.setMaxErrors(maxRetries + 1);
+        // a job given up after repeated failed status checks counts as failed, and is reported as an error
+        poller.onFailure((testjobId, e) -> {
+            jobFinished(jobsById.get(testjobId));
+            recordFailure();
+        });
+
+        Set<TestJob> failedSubmissions = new HashSet<>();
+        for (TestJob job : jobs) {
+            TestJobReport result;
+            try {
+                result = getResult(job.getResult());
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                // reported as an error together with the other results
+                failedSubmissions.add(job);
+                result = null;
+            }
+            submitted.add(result);
+            // no result means the job was skipped before it was submitted
+            if (result != null && !job.isCached()) {
+                jobsById.put(result.getTestjobId(), job);
+                poller.add(result);
+            }
+        }
+
+        getLog().info("Submitted " + submitted.size() + " test jobs, waiting for results");
+        Map<String, TestJobReport> finished;
+        boolean interrupted = false;
+        try {
+            finished = poller.awaitAll();
+        } catch (InterruptedException e) {
+            // cancel the jobs still running before giving up
+            interrupted = true;
+            stopped = true;
+            finished = poller.getFinishedJobs();
+        }
+        List<Future<?>> cancellations = new ArrayList<>();
+
+        for (int c = 0; c < jobs.size(); c++) {
+            TestJob job = jobs.get(c);
+            if (failedSubmissions.contains(job)) {
+                continue;
+            }
+
+            IOException error = submitted.get(c) == null ? null : poller.getFailedJobs().get(submitted.get(c).getTestjobId());
+            if (error != null) {
+                CompletableFuture<TestJobReport> failed = new CompletableFuture<>();
+                failed.completeExceptionally(error);
+                job.setResult(failed);
+                continue;
+            }
+
+            TestJobReport result = job.isCached() || submitted.get(c) == null ? submitted.get(c) :
+                    finished.get(submitted.get(c).getTestjobId());
+            job.setResult(CompletableFuture.completedFuture(result));
 
-        URL url = new URL(server);
-        httpHost = new HttpHost(url.getHost(), url.getPort(), url.getProtocol());
+            if (result == null && submitted.get(c) != null && stopped) {
+                job.skip();
+                String testjobId = submitted.get(c).getTestjobId();
+                cancellations.add(executor.submit(() -> cancelTestJob(job, testjobId)));
+            }
+
+            if (!job.isCached() && result != null && result.getTotalTime() != null) {
+                job.getTimings().setServer(result.getTotalTime());
+            }
+        }
+
+        if (!cancellations.isEmpty()) {
+            getLog().info("Cancelling " + cancellations.size() + " running test jobs");
+            for (Future<?> cancellation : cancellations) {
+                cancellation.get();
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while polling for test results");
+        }
+    }
 
-        CredentialsProvider credsProvider = new BasicCredentialsProvider();
-        credsProvider.setCredentials(new AuthScope(httpHost),
-                new UsernamePasswordCredentials(username, password));
-        httpClient = HttpClients.custom()
-                .setDefaultCredentialsProvider(credsProvider)
-                .build();
+    /**
+     * Asks TestEngine to cancel a submitted test job - if that fails the job just keeps running, so
+     * errors are only logged
+     */
 
-        AuthCache authCache = new BasicAuthCache();
-        BasicScheme basicAuth = new BasicScheme();
-        authCache.put(httpHost, basicAuth);
+    private void cancelTestJob(TestJob job, String testjobId) {
+        Endpoint endpoint = job.getEndpoint();
+        try {
+            HttpDelete httpDelete = new HttpDelete(endpoint.getUrl() + "/api/v1/testjobs/" +
+                    URLEncoder.encode(testjobId, StandardCharsets.UTF_8.toString()));
+
+            try (CloseableHttpResponse response = connection.getHttpClient().execute(endpoint.getHttpHost(), httpDelete, createHttpContext())) {
+                EntityUtils.consume(response.getEntity());
+                if (response.getStatusLine().getStatusCode() >= 300) {
+                    job.log(log -> log.warn("Failed to cancel test job " + testjobId + " for " + job.getName() + ": " +
+                            response.getStatusLine()));
+                }
+            }
+        } catch (IOException e) {
+            job.log(log -> log.warn("Failed to cancel test job " + testjobId + " for " + job.getName() + ": " +
+                    e.getMessage()));
+        } finally {
+            jobFinished(job);
+        }
+    }
+
+    /**
+     * Counts a failed test job - once maxFailures jobs have failed no more jobs are submitted and the
+     * submissions in progress are aborted
+     */
+
+    private void recordFailure() {
+        if (maxFailures > 0 && failures.incrementAndGet() == maxFailures) {
+            stopped = true;
+            getLog().warn(maxFailures + " test jobs failed, skipping the remaining tests");
+
+            for (TestJob job : runningJobs) {
+                job.skip();
+            }
+        }
+    }
+
+    private TestJobReport fetchReport(TestJob job) throws IOException {
+        TestJobReport submitted = getResult(job.getResult());
+        Endpoint endpoint = job.getEndpoint();
+
+        HttpGet httpGet = new HttpGet(endpoint.getUrl() + "/api/v1/testjobs/" +
+                URLEncoder.encode(submitted.getTestjobId(), StandardCharsets.UTF_8.toString()) + "/report");
+        httpGet.setHeader(HttpHeaders.ACCEPT, ContentType.APPLICATION_JSON.getMimeType());
+
+        TestJobReport result = readResponse(executeWithRetry(endpoint.getHttpHost(), httpGet, false, job));
+        if (TestJobPoller.isFinished(result.getStatus())) {
+            jobFinished(job);
+
+            if (result.getStatus() == TestJobReport.StatusEnum.FAILED) {
+                recordFailure();
+            }
+        }
+
+        return result;
+    }
+
+    private TestJobReport getResult(Future<TestJobReport> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for test job");
+        }
+    }
+
+    /**
+     * Reads and closes the response of a submitted test job - called from the worker threads so
+     * the pooled connection is released as soon as the job has finished
+     */
+
+    private TestJobReport readResponse(CloseableHttpResponse response) throws IOException {
+
+        try {
+            getLog().debug("Response status: " + response.getStatusLine());
+            HttpEntity entity = response.getEntity();
+
+            if (response.getStatusLine().getStatusCode() >= 300) {
+                throw new HttpResponseException(response.getStatusLine().getStatusCode(),
+                        "TestEngine returned " + response.getStatusLine() + ": " + EntityUtils.toString(entity));
+            }
+
+            // only buffer the whole body when it is actually going to be logged
+            if (getLog().isDebugEnabled()) {
+                String responseBody = EntityUtils.toString(entity, StandardCharsets.UTF_8);
+                getLog().debug("Response body:" + responseBody);
+
+                return async && !poll ? null : TestJobReportReader.read(responseBody, skipPassedStepMessages);
+            }
+
+            if (async && !poll) {
+                EntityUtils.consume(entity);
+                return null;
+            }
+
+            try (InputStream in = entity.getContent()) {
+                return TestJobReportReader.read(in, skipPassedStepMessages);
+            }
+        } finally {
+            response.close();
+        }
+    }
+
+    private void handleResult(TestJob job, JUnitReport report, ResultCache cache) throws Exception {
+
+        TestJobReport result = getResult(job.getResult());
+        String name = job.getName();
+
+        // cached results were timed in an earlier build
+        if (stepProfile != null && result != null && !job.isCached()) {
+            stepProfile.add(result, job.getEndpoint() == null ? "" : job.getEndpoint().toString());
+        }
+
+        if (targetComparison != null && result != null && !job.isCached() && result.getTotalTime() != null) {
+            targetComparison.add(job, result.getTotalTime(), result.getStatus() == TestJobReport.StatusEnum.FAILED);
+        }
+
+        if (result == null && job.isSkipped()) {
+            reportSkipped(report, name);
+        } else if( report != null ) {
+            if (result == null) {
+                report.addTestCaseWithError(name, 0, "Test job did not finish within " + pollTimeout + "ms",
+                    "<missing stacktrace>", new HashMap<String, String>(properties));
+
+                throw new MojoFailureException("Test Execution Timed Out");
+            } else if (result.getStatus() == TestJobReport.StatusEnum.FAILED) {
+
+                String message = logErrorsToConsole(result, getLog());
+                report.addTestCaseWithFailure(name, result.getTotalTime(),
+                    message, "<missing stacktrace>", new HashMap<String, String>(properties));
+
+                throw new MojoFailureException("Test Execution Failed");
+            } else if (job.isCached()) {
+                report.addCachedTestCase(name, result.getTotalTime(), new HashMap<String, String>(properties));
+            } else {
+                report.addTestCase(name, result.getTotalTime(), new HashMap<String, String>(properties));
+
+                if (performanceBaseline != null && result.getTotalTime() != null) {
+                    checkPerformance(job, result, report);
+                }
+
+                if (cache != null && result.getStatus() == TestJobReport.StatusEnum.FINISHED) {
+                    cache.put(job.getCacheKey(), result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Compares the times of a passed job with the performanceBaseline and records them unless they regressed, so
+     * the baseline does not drift towards slower runs - regressions are logged and added to the report as a
+     * failed testcase named after the job with a [performance] suffix. With acceptPerformanceBaseline all times
+     * are recorded and regressions are only logged, so an intended slowdown becomes the new baseline.
+     */
+
+    private void checkPerformance(TestJob job, TestJobReport result, JUnitReport report) throws IOException {
+        String name = job.getName();
+        List<String> findings = new ArrayList<>();
+
+        String finding = performanceBaseline.check(name, result.getTotalTime(), performanceThreshold, performanceMinDelta);
+        if (finding != null) {
+            findings.add("totalTime " + finding);
+        }
+
+        Map<String, Long> stepTimes = performanceGateSteps ? PerformanceBaseline.getStepTimes(result) :
+                Collections.emptyMap();
+        for (Map.Entry<String, Long> step : stepTimes.entrySet()) {
+            finding = performanceBaseline.check(name + " / " + step.getKey(), step.getValue(), performanceThreshold,
+                    performanceMinDelta);
+            if (finding != null) {
+                findings.add(step.getKey() + " " + finding);
+            }
+        }
+
+        if (acceptPerformanceBaseline || (updatePerformanceBaseline && findings.isEmpty())) {
+            performanceBaseline.record(name, result.getTotalTime());
+            for (Map.Entry<String, Long> step : stepTimes.entrySet()) {
+                performanceBaseline.record(name + " / " + step.getKey(), step.getValue());
+            }
+        }
+
+        if (acceptPerformanceBaseline) {
+            for (String message : findings) {
+                getLog().info("Accepting slower time in " + name + ": " + message);
+            }
+        } else if (!findings.isEmpty()) {
+            regressionCount++;
+            for (String message : findings) {
+                getLog().warn("Performance regression in " + name + ": " + message);
+            }
+            report.addTestCaseWithFailure(name + " [performance]", result.getTotalTime(),
+                    "Performance regression: " + String.join("; ", findings), "<missing stacktrace>",
+                    new HashMap<String, String>(properties));
+        }
+    }
+
+    private void reportSkipped(JUnitReport report, String name) throws IOException {
+        skipCount++;
+        if (report != null) {
+            report.addSkippedTestCase(name, "Skipped after " + maxFailures + " failures",
+                    new HashMap<String, String>(properties));
+        }
+    }
+
+    /**
+     * Reports a job that could not be run - for example because TestEngine responded with an error status or
+     * kept rejecting it after all retries - as an error, so the other jobs of the run carry on
+     */
+
+    private void reportError(TestJob job, JUnitReport report, IOException exception) throws IOException {
+        getLog().error("Error running " + job.getName() + ": " + exception.getMessage());
+        if (report != null) {
+            report.addTestCaseWithError(job.getName(), 0, String.valueOf(exception.getMessage()),
+                    Throwables.getStackTraceAsString(exception), new HashMap<String, String>(properties));
+        }
+    }
+
+    /**
+     * @return false if the job failed
+     */
+
+    private boolean reportResult(TestJob job, JUnitReports reports, ResultCache cache) throws Exception {
+        // the job has to have finished before the messages it logged while it ran can be written
+        try {
+            job.getResult().get();
+        } catch (ExecutionException | CancellationException e) {
+            // reported by handleResult
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + job.getName());
+        }
+        job.writeLog(getLog());
+
+        long reportStart = System.currentTimeMillis();
+        try {
+            handleResult(job, reports == null ? null : reports.getReport(job.getName()), cache);
+            return true;
+        } catch (MojoFailureException exception) {
+            return false;
+        } catch (InterruptedIOException exception) {
+            throw exception;
+        } catch (IOException exception) {
+            reportError(job, reports == null ? null : reports.getReport(job.getName()), exception);
+            return false;
+        } finally {
+            job.getTimings().setReport(System.currentTimeMillis() - reportStart);
+        }
+    }
+
+    /**
+     * Runs a recipe once for every row of its data file. Rows are read, filtered and submitted one at a
+     * time, and at most maxPendingRows of them are waiting for their result, so memory use does not
+     * depend on the size of the data file. Results are reported in row order as testcases named
+     * recipe.json[key], after the jobs of the files that are not data-driven.
+     *
+     * @return the number of rows and the number of failed rows and jobs
+     */
+
+    private int[] runDataDrivenRecipe(String file, ExecutorService executor, JUnitReports reports,
+                                      ResultCache cache) throws Exception {
+        File recipeFile = new File(projectsDirectory, file);
+        File dataFile = DataRows.find(recipeFile);
+        String recipe = Files.asCharSource(recipeFile, getEncoding()).read();
+        String message = "Running recipe " + file + " for each row in " + dataFile.getName();
+
+        Deque<TestJob> pending = new ArrayDeque<>();
+        int rowCount = 0;
+        int failCount = 0;
+
+        try (DataRows rows = DataRows.open(dataFile, getEncoding())) {
+            Map<String, String> row;
+            while (!stopped && (row = rows.next()) != null) {
+                rowCount++;
+                String name = file + "[" + rows.getKey(row) + "]";
+                ByteSource payload = ByteSource.wrap(filterRows(recipe, row));
+                for (Target target : targets) {
+                    TestJob job = new TestJob(getJobName(name, target), file, payload, true, target);
+                    // logged with the first row, as the rows may be submitted before earlier jobs are reported
+                    if (rowCount == 1 && pending.isEmpty()) {
+                        job.log(log -> log.info(message));
+                    }
+                    job.setResult(executor.submit(() -> runTestJob(job, cache)));
+                    pending.add(job);
+                }
+
+                if (pending.size() >= Math.max(1, maxPendingRows)) {
+                    failCount += reportPendingRows(pending, poll ? 0 : pending.size() - 1, executor, reports, cache);
+                }
+            }
+        } catch (IOException e) {
+            throw new IOException("Error reading " + dataFile + " at row " + (rowCount + 1) + ": " + e.getMessage(), e);
+        }
+
+        if (rowCount == 0 || stopped) {
+            failCount += reportJobs(executor, reports, cache);
+        }
+        if (rowCount == 0) {
+            getLog().info(message);
+        }
+        if (stopped) {
+            getLog().info("Skipping the remaining rows of " + file);
+        }
+
+        failCount += reportPendingRows(pending, 0, executor, reports, cache);
+        return new int[]{rowCount, failCount};
+    }
+
+    /**
+     * Reports the jobs of the files that are not data-driven, in submission order to keep the report and log
+     * output identical to a sequential run, and records their run times - only the first call reports anything
+     *
+     * @return the number of failed jobs
+     */
+
+    private int reportJobs(ExecutorService executor, JUnitReports reports, ResultCache cache) throws Exception {
+        List<TestJob> jobs = unreportedJobs;
+        unreportedJobs = Collections.emptyList();
+        if (poll && !jobs.isEmpty()) {
+            pollResults(jobs, executor);
+        }
+
+        int failCount = 0;
+        Map<String, Long> fileDurations = new LinkedHashMap<>();
+        for (TestJob job : jobs) {
+            if (recordedHistory != null) {
+                addDuration(fileDurations, job);
+            }
+
+            if (!reportResult(job, reports, cache)) {
+                failCount++;
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : fileDurations.entrySet()) {
+            if (entry.getValue() != null) {
+                recordedHistory.record(entry.getKey(), entry.getValue());
+            }
+        }
+        return failCount;
+    }
+
+    /**
+     * Reports the oldest pending rows until only the given number are left - polled rows are all waited
+     * for at once
+     *
+     * @return the number of failed rows
+     */
+
+    private int reportPendingRows(Deque<TestJob> pending, int remaining, ExecutorService executor,
+                                  JUnitReports reports, ResultCache cache) throws Exception {
+        int failCount = pending.size() > remaining ? reportJobs(executor, reports, cache) : 0;
+        if (poll && pending.size() > remaining) {
+            pollResults(new ArrayList<>(pending), executor);
+            remaining = 0;
+        }
+
+        while (pending.size() > remaining) {
+            TestJob job = pending.removeFirst();
+            if (!reportResult(job, reports, cache)) {
+                failCount++;
+            }
+            rowTotals.add(job);
+        }
+        return failCount;
+    }
+
+    /**
+     * @return the recipe as filtered in memory with the row values added to the configured properties
+     */
+
+    private byte[] filterRows(String recipe, Map<String, String> row) throws IOException {
+        try (Reader reader = filterRecipe(new StringReader(recipe), row)) {
+            return CharStreams.toString(reader).getBytes(getEncoding());
+        }
+    }
+
+    /**
+     * @return the name of the job running the test against the target - only suffixed with the target when
+     * running against several targets
+     */
+
+    private String getJobName(String test, Target target) {
+        return targets.size() > 1 ? target.getJobName(test) : test;
+    }
+
+    /**
+     * @return the recipe to submit to several targets, read once and shared by all of their jobs - files are
+     * read when first submitted, recipes filtered in memory are filtered once
+     */
+
+    private ByteSource getSharedRecipePayload(String file, File source) throws IOException {
+        if (disableFiltering) {
+            return new SharedFileSource(source);
+        }
+
+        if (!filterInMemory) {
+            return new SharedFileSource(new File(targetDirectory, file));
+        }
+
+        return ByteSource.wrap(getRecipePayload(file, source).read());
+    }
+
+    /**
+     * @return the recipe to submit - the filtered copy in the targetDirectory, the source recipe if filtering
+     * is disabled, or with filterInMemory the source recipe filtered while it is uploaded
+     */
+
+    private ByteSource getRecipePayload(String file, File source) {
+        if (disableFiltering) {
+            return Files.asByteSource(source);
+        }
+
+        if (!filterInMemory) {
+            return Files.asByteSource(new File(targetDirectory, file));
+        }
+
+        return new CharSource() {
+            @Override
+            public Reader openStream() throws IOException {
+                return filterRecipe(Files.newReader(source, getEncoding()), Collections.emptyMap());
+            }
+        }.asByteSource(getEncoding());
+    }
+
+    /**
+     * @return a reader filtering the recipe with the configured properties and the given additional values -
+     * the time spent setting up the filter and reading from it is added to the inMemoryFilterTime
+     */
+
+    Reader filterRecipe(Reader recipe, Map<String, String> values) throws IOException {
+        long start = System.nanoTime();
+        Properties additionalProperties = new Properties();
+        if (properties != null) {
+            additionalProperties.putAll(properties);
+        }
+        additionalProperties.putAll(values);
+
+        MavenReaderFilterRequest request = new MavenReaderFilterRequest();
+        request.setFrom(recipe);
+        request.setFiltering(true);
+        request.setMavenProject(mavenProject);
+        request.setMavenSession(mavenSession);
+        request.setAdditionalProperties(additionalProperties);
+        request.setSupportMultiLineFiltering(true);
+
+        Reader filtered;
+        try {
+            filtered = readerFilter.filter(request);
+        } catch (MavenFilteringException e) {
+            recipe.close();
+            throw new IOException("Error filtering recipe: " + e.getMessage(), e);
+        } finally {
+            inMemoryFilterTime.addAndGet(System.nanoTime() - start);
+        }
+
+        return new FilterReader(filtered) {
+            @Override
+            public int read() throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return super.read();
+                } finally {
+                    inMemoryFilterTime.addAndGet(System.nanoTime() - start);
+                }
+            }
+
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return super.read(buffer, offset, length);
+                } finally {
+                    inMemoryFilterTime.addAndGet(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    static String logErrorsToConsole(TestJobReport result, Log log) {
+
+        List<String> messages = new ArrayList<>();
+
+        for( TestSuiteResultReport testSuiteResultReport : result.getTestSuiteResultReports()){
+            for(TestCaseResultReport testCaseResultReport : testSuiteResultReport.getTestCaseResultReports()){
+                for(TestStepResultReport stepResultReport : testCaseResultReport.getTestStepResultReports()){
+                    if( stepResultReport.getAssertionStatus() == TestStepResultReport.AssertionStatusEnum.FAIL){
+                        log.error("Failed " + testSuiteResultReport.getTestSuiteName() + " / " +
+                                testCaseResultReport.getTestCaseName() + " / " + stepResultReport.getTestStepName());
+                        for( String message : stepResultReport.getMessages()){
+                            messages.add( message );
+                            log.error( "- " + message);
+                        }
+                    }
+                }
+            }
+        }
+
+        return Arrays.toString( messages.toArray());
+    }
+
+    /**
+     * Runs a single job on a worker thread - passed results cached for the same payload and
+     * execute uri are returned without submitting the job. Returns null without submitting
+     * the job if maxFailures has been reached, or if the submission was aborted because of that.
+     */
+
+    private TestJobReport runTestJob(TestJob job, ResultCache cache) throws IOException {
+        if (cache != null) {
+            job.setCacheKey(cache.key(job.getPayload(), buildExecuteUri(job.isRecipe() ? "/testjobs/recipe" : "/testjobs", job.getTarget())));
+
+            TestJobReport cached = cache.get(job.getCacheKey());
+            if (cached != null) {
+                job.log(log -> log.info("Using cached result for " + job.getName()));
+                job.setCached(true);
+                return cached;
+            }
+        }
+
+        TestJobReport result;
+        runningJobs.add(job);
+        try {
+            // checked after adding the job, so a concurrent stop either sees the job or is seen here
+            if (stopped) {
+                job.skip();
+                return null;
+            }
+
+            CloseableHttpResponse response = job.isRecipe() ? runJsonRecipe(job) : runXmlProject(job);
+            long parseStart = System.currentTimeMillis();
+            result = readResponse(response);
+            job.getTimings().setParse(System.currentTimeMillis() - parseStart);
+            if (result != null && result.getTotalTime() != null) {
+                job.getTimings().setServer(result.getTotalTime());
+            }
+        } catch (IOException | RuntimeException e) {
+            jobFinished(job);
+            if (job.isSkipped()) {
+                job.log(log -> log.info("Aborted " + job.getName()));
+                return null;
+            }
+            recordFailure();
+            throw e;
+        } finally {
+            runningJobs.remove(job);
+        }
+
+        if (result != null && result.getStatus() == TestJobReport.StatusEnum.FAILED) {
+            recordFailure();
+        }
+
+        // polled jobs stay outstanding on their endpoint until the poller has seen them finish
+        if (!poll || result == null || TestJobPoller.isFinished(result.getStatus())) {
+            jobFinished(job);
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the run time of the job to the total of its file over all targets - files with a job that has no run
+     * time (not run, failed to run or taken from the cache) get a null total and are not recorded
+     */
+
+    private void addDuration(Map<String, Long> fileDurations, TestJob job) throws IOException {
+        Long duration = null;
+        try {
+            TestJobReport result = getResult(job.getResult());
+            if (!job.isCached() && result != null && result.getTotalTime() != null) {
+                duration = result.getTotalTime();
+            }
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // jobs that could not be run have no duration, the error is reported with the results
+        }
+
+        if (!fileDurations.containsKey(job.getFile())) {
+            fileDurations.put(job.getFile(), duration);
+        } else {
+            Long total = fileDurations.get(job.getFile());
+            fileDurations.put(job.getFile(), total == null || duration == null ? null : total + duration);
+        }
+    }
+
+    private void jobFinished(TestJob job) {
+        Endpoint endpoint = job.releaseEndpoint();
+        if (endpoint != null) {
+            connection.getEndpointSelector().release(endpoint);
+        }
+    }
+
+    private CloseableHttpResponse runXmlProject(TestJob job) throws IOException {
+        job.log(log -> log.info("Executing project " + job.getName()));
+
+        return submit(job, "/testjobs", ContentType.APPLICATION_XML);
+    }
+
+    /**
+     * Submits the job to the endpoint with the fewest outstanding jobs - if the endpoint refuses the
+     * connection the job is resubmitted to the next endpoint
+     */
+
+    private CloseableHttpResponse submit(TestJob job, String path, ContentType contentType) throws IOException {
+        List<Endpoint> failedEndpoints = new ArrayList<>();
+
+        while (true) {
+            Endpoint endpoint = connection.getEndpointSelector().acquire(failedEndpoints);
+            job.setEndpoint(endpoint);
+
+            try {
+                HttpPost httpPost = new HttpPost(endpoint.getUrl() + buildExecuteUri(path, job.getTarget()));
+                job.setRequest(httpPost);
+                return execute(httpPost, endpoint, job, contentType);
+            } catch (HttpHostConnectException | ConnectTimeoutException e) {
+                jobFinished(job);
+                connection.getEndpointSelector().markUnavailable(endpoint);
+                failedEndpoints.add(endpoint);
+
+                String message = "TestEngine at " + endpoint + " is not available (" + e.getMessage() + ")" +
+                        (failedEndpoints.size() < connection.getEndpointSelector().getEndpoints().size() ?
+                                ", resubmitting " + job.getName() : "");
+                job.log(log -> log.warn(message));
+            }
+        }
+    }
+
+    /**
+     * Executes the request, retrying it with jittered exponential backoff (or after the delay in a Retry-After
+     * header) while TestEngine responds with 429 or 503 - these mean the request was rejected before anything
+     * was created, so resubmitting is safe. Limited requests wait for the AdaptiveConcurrencyLimiter and
+     * report overload and latency to it. Retries are logged with the messages of the job.
+     */
+
+    private CloseableHttpResponse executeWithRetry(HttpHost httpHost, HttpRequestBase request, boolean limited,
+                                                   TestJob job) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            CloseableHttpResponse response;
+            long startTime = System.currentTimeMillis();
+
+            try {
+                if (limited) {
+                    connection.getConcurrencyLimiter().acquire();
+                }
+
+                try {
+                    response = connection.getHttpClient().execute(httpHost, request, createHttpContext());
+                } finally {
+                    if (limited) {
+                        connection.getConcurrencyLimiter().release();
+                    }
+                }
+
+                int status = response.getStatusLine().getStatusCode();
+                if (status != SC_TOO_MANY_REQUESTS && status != HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                    if (limited && status < 300) {
+                        connection.getConcurrencyLimiter().onSuccess(System.currentTimeMillis() - startTime, async || poll);
+                    }
+                    return response;
+                }
+
+                if (limited) {
+                    connection.getConcurrencyLimiter().onOverload("HTTP " + status);
+                }
+
+                if (attempt >= maxRetries) {
+                    return response;
+                }
+
+                long delay = getRetryDelay(response, attempt);
+                EntityUtils.consumeQuietly(response.getEntity());
+                response.close();
+
+                String message = "TestEngine responded " + response.getStatusLine() + " to " +
+                        request.getURI().getPath() + ", retrying in " + delay + "ms (" + (attempt + 1) + "/" +
+                        maxRetries + ")";
+                job.log(log -> log.warn(message));
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to submit to TestEngine");
+            }
+        }
+    }
+
+    private long getRetryDelay(CloseableHttpResponse response, int attempt) {
+        long backoff = Math.min(MAX_RETRY_DELAY, retryInterval << Math.min(attempt, 20));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff - backoff / 2 + 1);
+
+        Header retryAfter = response.getFirstHeader(HttpHeaders.RETRY_AFTER);
+        if (retryAfter != null) {
+            String value = retryAfter.getValue().trim();
+            try {
+                delay = Math.max(delay, Long.parseLong(value) * 1000);
+            } catch (NumberFormatException e) {
+                Date date = DateUtils.parseDate(value);
+                if (date != null) {
+                    delay = Math.max(delay, date.getTime() - System.currentTimeMillis());
+                }
+            }
+        }
+
+        return Math.min(delay, MAX_RETRY_DELAY);
+    }
+
+    /**
+     * Uploads the payload of the job - gzip compressed while it is sent if compression is enabled and
+     * the payload is at least compressionThreshold bytes
+     */
+
+    private CloseableHttpResponse execute(HttpPost httpPost, Endpoint endpoint, TestJob job, ContentType contentType) throws IOException {
+        // the size of recipes filtered while they are uploaded is not known beforehand
+        Optional<Long> size = job.getPayload().sizeIfKnown();
+        boolean compress = compressRequests && (!size.isPresent() || size.get() >= compressionThreshold);
+
+        CountingEntity payloadEntity = new CountingEntity(new ByteSourceEntity(job.getPayload(), contentType));
+        CountingEntity entity = new CountingEntity(compress ? new GzipCompressingEntity(payloadEntity) : payloadEntity);
+        httpPost.setEntity(entity);
+
+        CloseableHttpResponse response = executeWithRetry(endpoint.getHttpHost(), httpPost, true, job);
+        job.setUploaded(payloadEntity.getBytesWritten(), entity.getBytesWritten());
+        job.getTimings().setWrite(entity.getWriteTime());
+        job.getTimings().setFirstByte((System.nanoTime() - entity.getWriteFinished()) / 1000000);
+
+        if (compress) {
+            long uploaded = payloadEntity.getBytesWritten();
+            long compressed = entity.getBytesWritten();
+            job.log(log -> log.info("Uploaded " + uploaded + " bytes for " + job.getName() + ", " + compressed +
+                    " bytes compressed"));
+        }
+
+        return response;
+    }
+
+    private String buildExecuteUri(String path, Target target) throws UnsupportedEncodingException {
+        String uri = "/api/v1" + path + "?async=" + (async || poll);
+        if( target.getEnvironment() != null ){
+            uri += "&environment=" + URLEncoder.encode(target.getEnvironment(), StandardCharsets.UTF_8.toString());
+        }
+
+        if (target.getHostAndPort() != null) {
+            uri += "&hostAndPort=" + URLEncoder.encode(target.getHostAndPort(), StandardCharsets.UTF_8.toString());
+        }
+
+        if (callback != null) {
+            uri += "&callback=" + URLEncoder.encode(callback, StandardCharsets.UTF_8.toString());
+        }
+        return uri;
+    }
+
+    private CloseableHttpResponse runJsonRecipe(TestJob job) throws IOException {
+
+        job.log(log -> log.info("Running recipe " + job.getName()));
+
+        return submit(job, "/testjobs/recipe", ContentType.APPLICATION_JSON);
+    }
+
+    /**
+     * Filters all recipes to the targetDirectory in a single pass - recipes whose source and filter
+     * properties have not changed since they were last filtered are skipped
+     */
+
+    void filterRecipes(List<String> files) throws IOException, MavenFilteringException {
+        if (!targetDirectory.exists()) {
+            targetDirectory.mkdirs();
+        }
+
+        Properties additionalProperties = new Properties();
+        if (properties != null) {
+            additionalProperties.putAll(properties);
+        }
+
+        Properties effectiveProperties = new Properties();
+        effectiveProperties.putAll(mavenProject.getProperties());
+        effectiveProperties.putAll(getSystemProperties());
+        effectiveProperties.putAll(getUserProperties());
+        effectiveProperties.putAll(additionalProperties);
+
+        Resource fileResource = new Resource();
+        fileResource.setDirectory(projectsDirectory.getAbsolutePath());
+        fileResource.setFiltering(true);
+
+        MavenResourcesExecution resourcesExecution = new MavenResourcesExecution();
+        resourcesExecution.setOutputDirectory(targetDirectory);
+        resourcesExecution.setResources(Lists.newArrayList(fileResource));
+        resourcesExecution.setOverwrite(true);
+        resourcesExecution.setSupportMultiLineFiltering(true);
+        resourcesExecution.setEncoding(getEncoding().name());
+        // maven-filtering reads this list after copying the resources and fails if it is not set
+        resourcesExecution.setNonFilteredFileExtensions(Collections.emptyList());
+
+        if (!additionalProperties.isEmpty()) {
+            getLog().debug("Adding additional properties: " + properties.toString());
+            resourcesExecution.setAdditionalProperties(additionalProperties);
+        }
+
+        resourcesExecution.setMavenProject(mavenProject);
+        resourcesExecution.setMavenSession(mavenSession);
+        resourcesExecution.setUseDefaultFilterWrappers(true);
+
+        // kept between the runs of the watch goal, which then only reads the cache file once
+        filterCache = filterCache == null ?
+                RecipeFilterCache.load(targetDirectory, effectiveProperties, mavenProject, getFilterFiles(resourcesExecution)) :
+                filterCache.update(effectiveProperties, mavenProject, getFilterFiles(resourcesExecution));
+        RecipeFilterCache cache = filterCache;
+
+        Map<String, String> changedRecipes = new HashMap<>();
+        int recipeCount = 0;
+
+        for (String file : files) {
+            if (!file.toLowerCase().endsWith(".json")) {
+                continue;
+            }
+
+            recipeCount++;
+            String hash = cache.hash(new File(projectsDirectory, file));
+            if (!cache.isUpToDate(file, hash, new File(targetDirectory, file))) {
+                fileResource.addInclude(file);
+                changedRecipes.put(file, hash);
+            }
+        }
+
+        getLog().info("Filtering " + changedRecipes.size() + " of " + recipeCount + " recipes");
+        if (changedRecipes.isEmpty()) {
+            return;
+        }
+
+        resourcesFiltering.filterResources(resourcesExecution);
+
+        for (Map.Entry<String, String> entry : changedRecipes.entrySet()) {
+            cache.put(entry.getKey(), entry.getValue());
+        }
+        cache.save();
+    }
+
+    /**
+     * @return the filter files the default filter wrappers of the execution read properties from
+     */
+
+    private List<File> getFilterFiles(MavenResourcesExecution resourcesExecution) {
+        List<String> filters = new ArrayList<>();
+        if (resourcesExecution.getFilters() != null) {
+            filters.addAll(resourcesExecution.getFilters());
+        }
+        if (resourcesExecution.isInjectProjectBuildFilters() && mavenProject.getBuild() != null) {
+            filters.addAll(mavenProject.getBuild().getFilters());
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String filter : filters) {
+            File file = new File(filter);
+            files.add(file.isAbsolute() ? file : new File(mavenProject.getBasedir(), filter));
+        }
+        return files;
+    }
+
+    /**
+     * Sets up the connection to the configured endpoints for this execution
+     */
+
+    void initHttpClient() throws MalformedURLException, MojoExecutionException {
+        connection = new TestEngineConnection(getEndpoints(), concurrency, UNAVAILABLE_ENDPOINT_PERIOD, getLog());
+        connectionShared = false;
+    }
+
+    /**
+     * @return the configured endpoints, or the server if no endpoints are configured
+     */
+
+    private List<Endpoint> getEndpoints() throws MojoExecutionException {
+        if (endpoints == null || endpoints.isEmpty()) {
+            if (server == null) {
+                throw new MojoExecutionException("Either server or endpoints must be configured");
+            }
+            if (username == null) {
+                throw new MojoExecutionException("username must be configured for server " + server);
+            }
+            if (password == null) {
+                throw new MojoExecutionException("password must be configured for server " + server);
+            }
+            endpoints = Lists.newArrayList(new Endpoint(server, username, password, 1));
+        }
+
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.getUrl() == null) {
+                throw new MojoExecutionException("url must be configured for every endpoint");
+            }
+            if (endpoint.getUsername() == null) {
+                throw new MojoExecutionException("username must be configured for endpoint " + endpoint.getUrl());
+            }
+            if (endpoint.getPassword() == null) {
+                throw new MojoExecutionException("password must be configured for endpoint " + endpoint.getUrl());
+            }
+        }
+        return endpoints;
+    }
+
+    /**
+     * Closes the connection of this execution - a connection shared across the reactor is left open for the
+     * other modules
+     */
+
+    void closeHttpClient() {
+        if (connection != null && !connectionShared) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                getLog().debug("Failed to close HttpClient: " + e.getMessage());
+            }
+        }
+        connection = null;
+    }
+
+    /**
+     * HttpClientContext is not thread-safe - each request gets its own context sharing the
+     * preemptive AuthCache
+     */
 
-        httpContext = HttpClientContext.create();
-        httpContext.setAuthCache(authCache);
+    private HttpClientContext createHttpContext() {
+        HttpClientContext httpContext = HttpClientContext.create();
+        httpContext.setAuthCache(connection.getAuthCache());
+        return httpContext;
     }
 }
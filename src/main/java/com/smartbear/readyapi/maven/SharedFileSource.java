@@ -0,0 +1,68 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+import com.google.common.io.Files;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A file that is read into memory the first time it is read, so a payload submitted to several targets is read
+ * from disk once and shared by all uploads. Unlike a memory-mapping, the file is not kept open and the content
+ * is freed with the jobs of the run, which matters for the watch goal that runs over and over.
+ */
+
+public class SharedFileSource extends ByteSource {
+    private final File file;
+    private byte[] content;
+
+    public SharedFileSource(File file) {
+        this.file = file;
+    }
+
+    private synchronized byte[] getContent() throws IOException {
+        if (content == null) {
+            content = Files.toByteArray(file);
+        }
+        return content;
+    }
+
+    @Override
+    public InputStream openStream() throws IOException {
+        return new ByteArrayInputStream(getContent());
+    }
+
+    @Override
+    public byte[] read() throws IOException {
+        return getContent().clone();
+    }
+
+    @Override
+    public synchronized Optional<Long> sizeIfKnown() {
+        return Optional.of(content == null ? file.length() : (long) content.length);
+    }
+
+    @Override
+    public long size() throws IOException {
+        return getContent().length;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.escape.Escaper;
+import com.google.common.html.HtmlEscapers;
+import com.smartbear.readyapi.testengine.model.TestCaseResultReport;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import com.smartbear.readyapi.testengine.model.TestStepResultReport;
+import com.smartbear.readyapi.testengine.model.TestSuiteResultReport;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Step timings of all test jobs of a run, aggregated per suite / testcase / step name and per TestEngine
+ * endpoint. Only the times are kept - in a growing long[] per step - so the TestJobReports can be released
+ * as soon as they are reported. Written as testengine-profile.json and testengine-profile.html.
+ */
+
+public class StepProfile {
+    public static final String NAME = "testengine-profile";
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final Map<String, StepTimes> steps = new HashMap<>();
+    private final Map<String, EndpointTotals> endpoints = new LinkedHashMap<>();
+
+    /**
+     * Adds the times of all steps in the report
+     *
+     * @param endpoint the TestEngine endpoint the job ran on
+     */
+
+    public synchronized void add(TestJobReport report, String endpoint) {
+        EndpointTotals totals = endpoints.computeIfAbsent(endpoint, e -> new EndpointTotals());
+        totals.jobs++;
+        if (report.getTotalTime() != null) {
+            totals.jobTime += report.getTotalTime();
+        }
+
+        if (report.getTestSuiteResultReports() == null) {
+            return;
+        }
+
+        for (TestSuiteResultReport suite : report.getTestSuiteResultReports()) {
+            if (suite.getTestCaseResultReports() == null) {
+                continue;
+            }
+            for (TestCaseResultReport testCase : suite.getTestCaseResultReports()) {
+                if (testCase.getTestStepResultReports() == null) {
+                    continue;
+                }
+                String prefix = suite.getTestSuiteName() + " / " + testCase.getTestCaseName() + " / ";
+                for (TestStepResultReport step : testCase.getTestStepResultReports()) {
+                    if (step.getTimeTaken() == null) {
+                        continue;
+                    }
+
+                    long time = step.getTimeTaken();
+                    steps.computeIfAbsent(prefix + step.getTestStepName(), name -> new StepTimes()).add(time);
+                    totals.steps++;
+                    totals.stepTime += time;
+                    if (step.getAssertionStatus() == TestStepResultReport.AssertionStatusEnum.FAIL) {
+                        totals.failedSteps++;
+                    }
+                }
+            }
+        }
+    }
+
+    public synchronized void log(Log log, int top) {
+        List<StepSummary> summaries = summarize();
+        if (summaries.isEmpty()) {
+            return;
+        }
+
+        log.info("Slowest steps in ms:");
+        log.info(String.format(Locale.ROOT, "  %9s %9s %9s %9s %7s  %s", "p50", "p95", "p99", "max", "count", "step"));
+        for (StepSummary step : summaries.subList(0, Math.min(top, summaries.size()))) {
+            log.info(String.format(Locale.ROOT, "  %9d %9d %9d %9d %7d  %s", step.quantiles[0], step.quantiles[1],
+                    step.quantiles[2], step.max, step.count, step.name));
+        }
+    }
+
+    /**
+     * Writes the profile to name.json and name.html in the directory
+     *
+     * @param top the number of slowest steps to list - the JSON also contains all other steps
+     */
+
+    public synchronized void save(File directory, String name, int top) throws IOException {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+
+        List<StepSummary> summaries = summarize();
+        saveJson(new File(directory, name + ".json"), summaries, top);
+        saveHtml(new File(directory, name + ".html"), summaries, top);
+    }
+
+    private void saveJson(File file, List<StepSummary> summaries, int top) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+
+        List<Map<String, Object>> stepList = new ArrayList<>();
+        for (StepSummary step : summaries) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", step.name);
+            entry.put("count", step.count);
+            entry.put("sum", step.sum);
+            entry.put("mean", step.count == 0 ? 0 : step.sum / step.count);
+            for (int c = 0; c < QUANTILES.length; c++) {
+                entry.put("p" + Math.round(QUANTILES[c] * 100), step.quantiles[c]);
+            }
+            entry.put("max", step.max);
+            stepList.add(entry);
+        }
+        root.put("slowest", stepList.subList(0, Math.min(top, stepList.size())));
+        root.put("steps", stepList);
+
+        Map<String, Object> endpointMap = new LinkedHashMap<>();
+        for (Map.Entry<String, EndpointTotals> entry : endpoints.entrySet()) {
+            EndpointTotals totals = entry.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("jobs", totals.jobs);
+            values.put("jobTime", totals.jobTime);
+            values.put("steps", totals.steps);
+            values.put("failedSteps", totals.failedSteps);
+            values.put("stepTime", totals.stepTime);
+            endpointMap.put(entry.getKey(), values);
+        }
+        root.put("endpoints", endpointMap);
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, root);
+    }
+
+    private void saveHtml(File file, List<StepSummary> summaries, int top) throws IOException {
+        Escaper html = HtmlEscapers.htmlEscaper();
+
+        try (PrintWriter out = new PrintWriter(file, StandardCharsets.UTF_8.name())) {
+            out.print("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>TestEngine step profile</title>\n");
+            out.print("<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:2em}" +
+                    "th,td{border:1px solid #ccc;padding:2px 8px}td.n{text-align:right}</style>\n</head>\n<body>\n");
+
+            out.print("<h1>Slowest steps</h1>\n<p>" + Math.min(top, summaries.size()) + " of " + summaries.size() +
+                    " steps by p95, times in ms</p>\n");
+            out.print("<table>\n<tr><th>Step</th><th>Count</th><th>Total</th><th>Mean</th>");
+            for (double quantile : QUANTILES) {
+                out.print("<th>p" + Math.round(quantile * 100) + "</th>");
+            }
+            out.print("<th>Max</th></tr>\n");
+            for (StepSummary step : summaries.subList(0, Math.min(top, summaries.size()))) {
+                out.print("<tr><td>" + html.escape(step.name) + "</td>" + cell(step.count) + cell(step.sum) +
+                        cell(step.count == 0 ? 0 : step.sum / step.count));
+                for (long quantile : step.quantiles) {
+                    out.print(cell(quantile));
+                }
+                out.print(cell(step.max) + "</tr>\n");
+            }
+            out.print("</table>\n");
+
+            out.print("<h1>Endpoints</h1>\n<table>\n<tr><th>Endpoint</th><th>Jobs</th><th>Job time</th>" +
+                    "<th>Steps</th><th>Failed steps</th><th>Step time</th></tr>\n");
+            for (Map.Entry<String, EndpointTotals> entry : endpoints.entrySet()) {
+                EndpointTotals totals = entry.getValue();
+                out.print("<tr><td>" + html.escape(entry.getKey()) + "</td>" + cell(totals.jobs) + cell(totals.jobTime) +
+                        cell(totals.steps) + cell(totals.failedSteps) + cell(totals.stepTime) + "</tr>\n");
+            }
+            out.print("</table>\n</body>\n</html>\n");
+        }
+    }
+
+    private static String cell(long value) {
+        return "<td class=\"n\">" + value + "</td>";
+    }
+
+    /**
+     * @return the summaries of all steps, slowest p95 first
+     */
+
+    private List<StepSummary> summarize() {
+        List<StepSummary> summaries = new ArrayList<>(steps.size());
+        for (Map.Entry<String, StepTimes> entry : steps.entrySet()) {
+            summaries.add(new StepSummary(entry.getKey(), entry.getValue()));
+        }
+
+        summaries.sort(Comparator.comparingLong((StepSummary step) -> step.quantiles[1])
+                .thenComparingLong(step -> step.sum).reversed());
+        return summaries;
+    }
+
+    private static class StepTimes {
+        private long[] times = new long[4];
+        private int count;
+
+        void add(long time) {
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+            }
+            times[count++] = time;
+        }
+    }
+
+    private static class EndpointTotals {
+        private long jobs;
+        private long jobTime;
+        private long steps;
+        private long failedSteps;
+        private long stepTime;
+    }
+
+    private static class StepSummary {
+        private final String name;
+        private final int count;
+        private final long sum;
+        private final long max;
+        private final long[] quantiles = new long[QUANTILES.length];
+
+        StepSummary(String name, StepTimes times) {
+            long[] sorted = Arrays.copyOf(times.times, times.count);
+            Arrays.sort(sorted);
+
+            this.name = name;
+            this.count = sorted.length;
+            this.sum = Arrays.stream(sorted).sum();
+            this.max = sorted.length == 0 ? 0 : sorted[sorted.length - 1];
+            for (int c = 0; c < QUANTILES.length; c++) {
+                quantiles[c] = MetricsReport.percentile(sorted, QUANTILES[c]);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The environment and/or hostAndPort a test job runs against - a run has a single target unless lists of
+ * environments or hostAndPorts are configured, in which case every test is run against each of them
+ */
+
+public class Target {
+    private final String environment;
+    private final String hostAndPort;
+
+    public Target(String environment, String hostAndPort) {
+        this.environment = environment;
+        this.hostAndPort = hostAndPort;
+    }
+
+    /**
+     * @return a target for every combination of the environments and hostAndPorts - the single environment
+     * and hostAndPort are used where no list is configured
+     */
+
+    public static List<Target> of(String environment, List<String> environments, String hostAndPort,
+                                  List<String> hostAndPorts) {
+        List<String> environmentList = environments == null || environments.isEmpty() ?
+                Collections.singletonList(environment) : environments;
+        List<String> hostAndPortList = hostAndPorts == null || hostAndPorts.isEmpty() ?
+                Collections.singletonList(hostAndPort) : hostAndPorts;
+
+        List<Target> targets = new ArrayList<>();
+        for (String env : environmentList) {
+            for (String host : hostAndPortList) {
+                targets.add(new Target(env, host));
+            }
+        }
+        return targets;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public String getHostAndPort() {
+        return hostAndPort;
+    }
+
+    /**
+     * @return the name of a test job running the test against this target, as used in reports
+     */
+
+    public String getJobName(String test) {
+        return test + " [" + this + "]";
+    }
+
+    /**
+     * @return the name of the target as added to the testcase names - environment@hostAndPort if both are set
+     */
+
+    @Override
+    public String toString() {
+        if (environment != null && hostAndPort != null) {
+            return environment + "@" + hostAndPort;
+        }
+        return environment != null ? environment : hostAndPort == null ? "" : hostAndPort;
+    }
+}
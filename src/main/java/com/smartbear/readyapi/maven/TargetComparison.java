@@ -0,0 +1,140 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The durations of the tests of a run against several targets. Targets are compared by the total time of
+ * the tests that finished on all of them, so a test that failed early or did not run on one target does not
+ * skew the comparison. The rows of a data-driven recipe are summed up as one test.
+ */
+
+public class TargetComparison {
+    private final List<Target> targets;
+    private final long[] jobs;
+    private final long[] failures;
+    private final long[] totalTimes;
+    // the total time and number of passed jobs of each test on each target
+    private final Map<String, TestTimes> times = new LinkedHashMap<>();
+
+    public TargetComparison(List<Target> targets) {
+        this.targets = targets;
+        this.jobs = new long[targets.size()];
+        this.failures = new long[targets.size()];
+        this.totalTimes = new long[targets.size()];
+    }
+
+    public synchronized void add(TestJob job, long time, boolean failed) {
+        Target target = job.getTarget();
+        int index = targets.indexOf(target);
+        if (index < 0) {
+            return;
+        }
+
+        jobs[index]++;
+        totalTimes[index] += time;
+        if (failed) {
+            failures[index]++;
+            return;
+        }
+
+        TestTimes testTimes = times.computeIfAbsent(job.getFile(), name -> new TestTimes(targets.size()));
+        testTimes.sums[index] += time;
+        testTimes.counts[index]++;
+    }
+
+    /**
+     * @param top the number of tests with the largest difference between targets to list
+     */
+
+    public synchronized void log(Log log, int top) {
+        long[] commonTimes = new long[targets.size()];
+        List<Map.Entry<String, long[]>> common = new ArrayList<>();
+        for (Map.Entry<String, TestTimes> entry : times.entrySet()) {
+            long[] testTimes = entry.getValue().getTimes();
+            if (testTimes != null) {
+                common.add(new AbstractMap.SimpleEntry<>(entry.getKey(), testTimes));
+                for (int c = 0; c < commonTimes.length; c++) {
+                    commonTimes[c] += testTimes[c];
+                }
+            }
+        }
+        long fastest = Arrays.stream(commonTimes).min().orElse(0);
+
+        log.info("Durations by target in ms (common: the " + common.size() + " tests passed on all targets):");
+        log.info(String.format(Locale.ROOT, "  %-30s %7s %8s %10s %8s %10s %8s", "target", "jobs", "failures",
+                "total", "mean", "common", "vs best"));
+        for (int c = 0; c < targets.size(); c++) {
+            log.info(String.format(Locale.ROOT, "  %-30s %7d %8d %10d %8d %10d %8s", targets.get(c), jobs[c],
+                    failures[c], totalTimes[c], jobs[c] == 0 ? 0 : totalTimes[c] / jobs[c], commonTimes[c],
+                    fastest == 0 ? "-" : String.format(Locale.ROOT, "%+.0f%%", (commonTimes[c] - fastest) * 100.0 / fastest)));
+        }
+
+        common.sort(Comparator.comparingLong((Map.Entry<String, long[]> entry) -> spread(entry.getValue())).reversed());
+        if (!common.isEmpty() && spread(common.get(0).getValue()) > 0) {
+            log.info("Largest differences between targets:");
+            for (Map.Entry<String, long[]> entry : common.subList(0, Math.min(top, common.size()))) {
+                StringBuilder line = new StringBuilder("  ").append(entry.getKey()).append(':');
+                for (int c = 0; c < targets.size(); c++) {
+                    line.append(c == 0 ? " " : ", ").append(targets.get(c)).append(' ').append(entry.getValue()[c]).append("ms");
+                }
+                log.info(line);
+            }
+        }
+    }
+
+    private static long spread(long[] values) {
+        return Arrays.stream(values).max().orElse(0) - Arrays.stream(values).min().orElse(0);
+    }
+
+    private static class TestTimes {
+        private final long[] sums;
+        private final int[] counts;
+
+        private TestTimes(int targets) {
+            sums = new long[targets];
+            counts = new int[targets];
+        }
+
+        /**
+         * @return the time of the test on each target, or null if it did not pass on all of them - where
+         * fewer rows of a data-driven recipe passed on a target, its time is scaled up to the same number of rows
+         */
+
+        private long[] getTimes() {
+            int maxCount = Arrays.stream(counts).max().orElse(0);
+            long[] result = new long[sums.length];
+            for (int c = 0; c < sums.length; c++) {
+                if (counts[c] == 0) {
+                    return null;
+                }
+                result[c] = sums[c] * maxCount / counts[c];
+            }
+            return result;
+        }
+    }
+}
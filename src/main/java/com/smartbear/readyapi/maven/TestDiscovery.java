@@ -0,0 +1,325 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hashing;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.AbstractScanner;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the recipes and projects in the projectsDirectory. Directories are listed in parallel, and with an
+ * index file only directories whose modification time has changed since the previous build are listed again -
+ * the others just have their modification time checked. Files matching the includes can be checked to
+ * actually be recipes (json with testSteps, testCases or testSuites) or projects (xml with a soapui-project
+ * root element), so fixtures and other data files next to the tests are not submitted.
+ */
+
+public class TestDiscovery {
+    public static final List<String> DEFAULT_INCLUDES = Collections.unmodifiableList(Arrays.asList("**/*.json", "**/*.xml"));
+
+    private static final Set<String> RECIPE_FIELDS = ImmutableSet.of("testSteps", "testCases", "testSuites");
+    private static final String PROJECT_ELEMENT = "soapui-project";
+    // directories modified this close to the time the index was written may have changed again within the
+    // granularity of the file system timestamps, so they are listed again
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final File root;
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final boolean detectTestFiles;
+    private final Log log;
+
+    private final AtomicInteger listedDirectories = new AtomicInteger();
+    private final AtomicInteger skippedFiles = new AtomicInteger();
+
+    /**
+     * @param includes        the patterns of files to run, relative to the root
+     * @param excludes        the patterns of files not to run - the default excludes of Maven (for version control
+     *                        directories and editor backups) are always added
+     * @param detectTestFiles only returns included files that are recipes or projects
+     */
+
+    public TestDiscovery(File root, List<String> includes, List<String> excludes, boolean detectTestFiles, Log log) {
+        this.root = root;
+        this.includes = normalize(includes);
+        List<String> allExcludes = new ArrayList<>(excludes);
+        allExcludes.addAll(Arrays.asList(AbstractScanner.DEFAULTEXCLUDES));
+        this.excludes = normalize(allExcludes);
+        this.detectTestFiles = detectTestFiles;
+        this.log = log;
+    }
+
+    /**
+     * @param indexFile the index of a previous discovery to update, or null to list all directories
+     * @return the paths of all recipes and projects relative to the root, sorted
+     */
+
+    public List<String> discover(File indexFile) throws IOException {
+        if (!root.isDirectory()) {
+            return Collections.emptyList();
+        }
+
+        Index previous = indexFile == null ? null : readIndex(indexFile);
+        Index index = new Index();
+        index.written = System.currentTimeMillis();
+        index.patterns = getPatternsHash();
+
+        ForkJoinPool.commonPool().invoke(new ScanDirectory("", previous, index));
+
+        List<String> files = new ArrayList<>();
+        for (Map.Entry<String, Directory> entry : index.directories.entrySet()) {
+            for (String test : entry.getValue().tests) {
+                files.add(entry.getKey().isEmpty() ? test : entry.getKey() + File.separator + test);
+            }
+        }
+        Collections.sort(files);
+
+        if (indexFile != null) {
+            File dir = indexFile.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            MAPPER.writeValue(indexFile, index);
+        }
+
+        log.info("Discovered " + files.size() + " test files in " + index.directories.size() + " directories" +
+                (indexFile == null ? "" : " (" + listedDirectories + " listed)") +
+                (skippedFiles.get() > 0 ? ", skipped " + skippedFiles + " files that are not recipes or projects" : ""));
+        return files;
+    }
+
+    private Index readIndex(File indexFile) {
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        try {
+            Index index = MAPPER.readValue(indexFile, Index.class);
+            return getPatternsHash().equals(index.patterns) ? index : null;
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable discovery index " + indexFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private String getPatternsHash() {
+        return Hashing.sha256().hashString(root.getAbsolutePath() + "\n" + includes + "\n" + excludes + "\n" +
+                detectTestFiles, StandardCharsets.UTF_8).toString();
+    }
+
+    private class ScanDirectory extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+        private final Index previous;
+        private final Index index;
+
+        ScanDirectory(String path, Index previous, Index index) {
+            this.path = path;
+            this.previous = previous;
+            this.index = index;
+        }
+
+        @Override
+        protected void compute() {
+            File dir = path.isEmpty() ? root : new File(root, path);
+            long modified = dir.lastModified();
+
+            Directory directory = previous == null ? null : previous.directories.get(path);
+            if (directory == null || directory.modified != modified ||
+                    modified >= previous.written - TIMESTAMP_GRANULARITY) {
+                directory = list(dir, modified);
+                listedDirectories.incrementAndGet();
+            }
+            index.directories.put(path, directory);
+
+            List<ScanDirectory> subdirectories = new ArrayList<>();
+            for (String name : directory.directories) {
+                subdirectories.add(new ScanDirectory(path.isEmpty() ? name : path + File.separator + name, previous, index));
+            }
+            invokeAll(subdirectories);
+        }
+
+        private Directory list(File dir, long modified) {
+            Directory directory = new Directory();
+            directory.modified = modified;
+
+            String[] names = dir.list();
+            if (names == null) {
+                return directory;
+            }
+            Arrays.sort(names);
+
+            for (String name : names) {
+                String relativePath = path.isEmpty() ? name : path + File.separator + name;
+                File file = new File(dir, name);
+
+                if (file.isDirectory()) {
+                    if (!isExcludedDirectory(relativePath)) {
+                        directory.directories.add(name);
+                    }
+                } else if (isIncluded(relativePath)) {
+                    if (!detectTestFiles || isTestFile(file)) {
+                        directory.tests.add(name);
+                    } else {
+                        skippedFiles.incrementAndGet();
+                        log.debug("Skipping " + relativePath + ", it is not a recipe or project");
+                    }
+                }
+            }
+
+            return directory;
+        }
+    }
+
+    private boolean isIncluded(String path) {
+        return matchesAny(includes, path) && !matchesAny(excludes, path);
+    }
+
+    /**
+     * @return true if the excludes match everything in the directory, so it does not need to be listed
+     */
+
+    private boolean isExcludedDirectory(String path) {
+        for (String exclude : excludes) {
+            if (exclude.endsWith(File.separator + "**") && SelectorUtils.matchPath(exclude, path, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAny(List<String> patterns, String path) {
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, path, true)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> normalize(List<String> patterns) {
+        List<String> normalized = new ArrayList<>();
+        for (String pattern : patterns) {
+            String value = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            normalized.add(value.endsWith(File.separator) ? value + "**" : value);
+        }
+        return normalized;
+    }
+
+    /**
+     * @return false if the file is a well-formed json or xml file that is not a recipe or project - files that can
+     * not be parsed (for example recipes with unfiltered properties) are run and left to TestEngine to report
+     */
+
+    static boolean isTestFile(File file) {
+        String name = file.getName().toLowerCase();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (name.endsWith(".json")) {
+                return isRecipe(in);
+            } else if (name.endsWith(".xml")) {
+                return isProject(in);
+            }
+            return false;
+        } catch (IOException | XMLStreamException e) {
+            return true;
+        }
+    }
+
+    private static boolean isRecipe(InputStream in) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                if (RECIPE_FIELDS.contains(parser.getCurrentName())) {
+                    return true;
+                }
+                parser.nextToken();
+                parser.skipChildren();
+            }
+            return false;
+        }
+    }
+
+    private static boolean isProject(InputStream in) throws XMLStreamException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return PROJECT_ELEMENT.equals(reader.getLocalName());
+                }
+            }
+            return false;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * The persisted index - public fields for Jackson
+     */
+
+    static class Index {
+        public long written;
+        public String patterns;
+        public Map<String, Directory> directories = new ConcurrentHashMap<>();
+    }
+
+    static class Directory {
+        public long modified;
+        public List<String> directories = new ArrayList<>();
+        public List<String> tests = new ArrayList<>();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.http.HttpHost;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.List;
+
+/**
+ * The HttpClient, endpoint selection and concurrency limit used to run test jobs on a set of TestEngine
+ * endpoints - owned by a single execution, or shared by all modules of a reactor through a TestEngineSession
+ */
+
+public class TestEngineConnection implements Closeable {
+    private final CloseableHttpClient httpClient;
+    private final AuthCache authCache;
+    private final EndpointSelector endpointSelector;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    /**
+     * Sets up HttpClient with preemptive basic authentication for all endpoints and a connection
+     * pool sized to the concurrency
+     *
+     * @param unavailablePeriod the time in milliseconds an endpoint is avoided after it refused a connection
+     */
+
+    public TestEngineConnection(List<Endpoint> endpoints, int concurrency, long unavailablePeriod, Log log)
+            throws MalformedURLException {
+        endpointSelector = new EndpointSelector(endpoints, unavailablePeriod);
+        concurrencyLimiter = new AdaptiveConcurrencyLimiter(concurrency, log);
+
+        CredentialsProvider credsProvider = new BasicCredentialsProvider();
+        authCache = new BasicAuthCache();
+
+        for (Endpoint endpoint : endpoints) {
+            HttpHost httpHost = endpoint.getHttpHost();
+            credsProvider.setCredentials(new AuthScope(httpHost),
+                    new UsernamePasswordCredentials(endpoint.getUsername(), endpoint.getPassword()));
+            authCache.put(httpHost, new BasicScheme());
+        }
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(Math.max(1, concurrency) * endpoints.size());
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, concurrency));
+
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultCredentialsProvider(credsProvider)
+                .build();
+    }
+
+    public CloseableHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    public AuthCache getAuthCache() {
+        return authCache;
+    }
+
+    public EndpointSelector getEndpointSelector() {
+        return endpointSelector;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The state the executions of the run goal share across the modules of a reactor build: one
+ * TestEngineConnection per endpoint configuration, so all modules - also those built in parallel with -T -
+ * use a single connection pool and concurrency limit, and the reports of all modules for the aggregated
+ * report. Connections are closed when the build ends, whether all modules ran or not.
+ */
+
+public class TestEngineSession {
+    public static final String REPORT_NAME = "testengine-reactor-report";
+
+    // keyed by the execution request, which - unlike the MavenSession that is cloned for every module of a
+    // parallel build - is the same for the whole reactor
+    private static final Map<MavenExecutionRequest, TestEngineSession> SESSIONS = new WeakHashMap<>();
+
+    private final String name;
+    private final Log log;
+    // the prefix of the testcases of each module by groupId:artifactId, in reactor order
+    private final Map<String, String> modules = new LinkedHashMap<>();
+
+    private final Map<String, TestEngineConnection> connections = new HashMap<>();
+    private final Map<String, List<File>> moduleReports = new HashMap<>();
+
+    private TestEngineSession(MavenSession session, Log log) {
+        this.log = log;
+        List<MavenProject> projects = session.getProjects() == null ? new ArrayList<>() : session.getProjects();
+        Map<String, Integer> artifactIds = new HashMap<>();
+        for (MavenProject project : projects) {
+            artifactIds.merge(project.getArtifactId(), 1, Integer::sum);
+        }
+
+        // testcases are prefixed by the artifactId, or by groupId:artifactId where the artifactId is not unique
+        for (MavenProject project : projects) {
+            modules.put(getKey(project), artifactIds.get(project.getArtifactId()) > 1 ? getKey(project) :
+                    project.getArtifactId());
+        }
+
+        name = session.getTopLevelProject() == null ? "reactor" : session.getTopLevelProject().getName();
+    }
+
+    /**
+     * @return the session of the build, created on first use and closed when Maven reports the end of the build
+     */
+
+    public static TestEngineSession get(MavenSession session, Log log) {
+        synchronized (SESSIONS) {
+            MavenExecutionRequest request = session.getRequest();
+            TestEngineSession testEngineSession = SESSIONS.get(request);
+            if (testEngineSession == null) {
+                testEngineSession = new TestEngineSession(session, log);
+                SESSIONS.put(request, testEngineSession);
+                request.setExecutionListener(new SessionEndListener(request.getExecutionListener(),
+                        testEngineSession::close));
+            }
+            return testEngineSession;
+        }
+    }
+
+    private static String getKey(MavenProject project) {
+        return project.getGroupId() + ":" + project.getArtifactId();
+    }
+
+    /**
+     * @return the connection shared by all modules configured with the same endpoints and concurrency - the
+     * concurrency is the limit for all of these modules together
+     */
+
+    public synchronized TestEngineConnection getConnection(List<Endpoint> endpoints, int concurrency,
+                                                           long unavailablePeriod, Log log) throws MalformedURLException {
+        StringBuilder key = new StringBuilder().append(concurrency);
+        for (Endpoint endpoint : endpoints) {
+            key.append('\n').append(endpoint.getUrl()).append(' ').append(endpoint.getUsername()).append(' ')
+                    .append(endpoint.getWeight());
+        }
+
+        TestEngineConnection connection = connections.get(key.toString());
+        if (connection == null) {
+            connection = new TestEngineConnection(endpoints, concurrency, unavailablePeriod, log);
+            connections.put(key.toString(), connection);
+            log.info("Sharing the connection to " + endpoints + " with a concurrency of " + concurrency +
+                    " across the reactor");
+        }
+        return connection;
+    }
+
+    /**
+     * Called when an execution of the run goal has finished, whether it ran any tests or not. Updates the
+     * aggregated report with the reports of the module.
+     *
+     * @param reports         the reports the module has written, or null if it did not write any
+     * @param aggregateReport the aggregated report to update, or null
+     */
+
+    public synchronized void finished(MavenProject project, List<File> reports, File aggregateReport, Log log) {
+        if (aggregateReport != null && reports != null) {
+            moduleReports.put(getKey(project), reports);
+            modules.putIfAbsent(getKey(project), getKey(project));
+            try {
+                saveAggregateReport(aggregateReport, log);
+            } catch (IOException e) {
+                log.warn("Failed to write the aggregated report " + aggregateReport + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewritten after every module, in reactor order, so it is complete after the last module and still
+     * reports the modules that ran if the build stops early
+     */
+
+    private void saveAggregateReport(File file, Log log) throws IOException {
+        try (JUnitReport report = new JUnitReport()) {
+            report.setTestSuiteName(name);
+
+            int moduleCount = 0;
+            for (Map.Entry<String, String> module : modules.entrySet()) {
+                List<File> reports = moduleReports.get(module.getKey());
+                if (reports == null) {
+                    continue;
+                }
+
+                moduleCount++;
+                for (File moduleReport : reports) {
+                    if (moduleReport.exists()) {
+                        report.addTestCases(moduleReport, module.getValue() + "/");
+                    }
+                }
+            }
+
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            report.save(file);
+            log.info("Aggregated the reports of " + moduleCount + " modules with " + report.getNoofTestCases() +
+                    " testcases in " + file);
+        }
+    }
+
+    /**
+     * Closes the shared connections - a module running after that, for example in a build that runs the
+     * session again, just opens a new connection
+     */
+
+    synchronized void close() {
+        for (TestEngineConnection connection : connections.values()) {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                log.debug("Failed to close HttpClient: " + e.getMessage());
+            }
+        }
+        connections.clear();
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.google.common.io.ByteSource;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.maven.plugin.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * A single recipe or project submitted to TestEngine during a run
+ */
+
+public class TestJob {
+    private final String name;
+    private final String file;
+    private final ByteSource payload;
+    private final boolean recipe;
+    private final Target target;
+
+    private Future<TestJobReport> result;
+    private String cacheKey;
+    private boolean cached;
+    private long uploadedBytes;
+    private long bytesOnWire;
+    private Endpoint endpoint;
+    private boolean endpointReleased;
+    private HttpRequestBase request;
+    private boolean skipped;
+    private final JobTimings timings = new JobTimings();
+    private final List<Consumer<Log>> messages = new ArrayList<>();
+
+    /**
+     * @param name    the path of the recipe/project relative to the projectsDirectory, used as testcase name -
+     *                with several targets suffixed by the target
+     * @param file    the path of the recipe/project relative to the projectsDirectory, the same for all targets
+     *                and all rows of a data-driven recipe
+     * @param payload the content to submit - for recipes this is the filtered copy unless filtering is disabled,
+     *                for the rows of data-driven recipes the recipe filtered in memory
+     * @param recipe  true for json recipes, false for xml projects
+     * @param target  the environment/hostAndPort to run against
+     */
+
+    public TestJob(String name, String file, ByteSource payload, boolean recipe, Target target) {
+        this.name = name;
+        this.file = file;
+        this.payload = payload;
+        this.recipe = recipe;
+        this.target = target;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public ByteSource getPayload() {
+        return payload;
+    }
+
+    public boolean isRecipe() {
+        return recipe;
+    }
+
+    public Target getTarget() {
+        return target;
+    }
+
+    public JobTimings getTimings() {
+        return timings;
+    }
+
+    public Future<TestJobReport> getResult() {
+        return result;
+    }
+
+    public void setResult(Future<TestJobReport> result) {
+        this.result = result;
+    }
+
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
+    public void setCacheKey(String cacheKey) {
+        this.cacheKey = cacheKey;
+    }
+
+    public boolean isCached() {
+        return cached;
+    }
+
+    public void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * @return the size of the uploaded file, or 0 if the job was not submitted
+     */
+
+    public long getUploadedBytes() {
+        return uploadedBytes;
+    }
+
+    /**
+     * @return the number of bytes sent for the uploaded file - less than getUploadedBytes() if it was compressed
+     */
+
+    public long getBytesOnWire() {
+        return bytesOnWire;
+    }
+
+    public void setUploaded(long uploadedBytes, long bytesOnWire) {
+        this.uploadedBytes = uploadedBytes;
+        this.bytesOnWire = bytesOnWire;
+    }
+
+    /**
+     * @return the endpoint the job was submitted to
+     */
+
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    public synchronized void setEndpoint(Endpoint endpoint) {
+        this.endpoint = endpoint;
+        this.endpointReleased = false;
+    }
+
+    /**
+     * @return the endpoint of the job the first time it is called after the job was submitted, null afterwards
+     * - used to count each job as outstanding on its endpoint exactly until it has finished
+     */
+
+    public synchronized Endpoint releaseEndpoint() {
+        if (endpoint == null || endpointReleased) {
+            return null;
+        }
+
+        endpointReleased = true;
+        return endpoint;
+    }
+
+    /**
+     * Sets the request submitting the job so it can be aborted by skip() - a request set after the job was
+     * skipped is aborted right away
+     */
+
+    public synchronized void setRequest(HttpRequestBase request) {
+        this.request = request;
+        if (skipped && request != null) {
+            request.abort();
+        }
+    }
+
+    /**
+     * Marks the job as skipped because the run was stopped, aborting its submission if it is in progress
+     */
+
+    public synchronized void skip() {
+        skipped = true;
+        if (request != null) {
+            request.abort();
+        }
+    }
+
+    public synchronized boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Keeps a message logged while the job runs on a worker thread until writeLog is called, so the messages
+     * of all jobs appear in the order they are reported instead of the order they happened to run in
+     */
+
+    public synchronized void log(Consumer<Log> message) {
+        messages.add(message);
+    }
+
+    /**
+     * Writes and forgets the messages kept by log
+     */
+
+    public synchronized void writeLog(Log log) {
+        for (Consumer<Log> message : messages) {
+            message.accept(log);
+        }
+        messages.clear();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Polls TestEngine for the final reports of asynchronously submitted test jobs from a single thread.
+ * Each job backs off exponentially with jitter while its status stays the same, and starts over from
+ * the initial interval when the status changes (for example from PENDING to RUNNING).
+ */
+
+public class TestJobPoller {
+
+    public interface ReportFetcher {
+        TestJobReport fetch(String testjobId) throws IOException;
+    }
+
+    private final ReportFetcher fetcher;
+    private final long initialInterval;
+    private final long maxInterval;
+    private final long timeout;
+    private final Log log;
+
+    private final List<PendingJob> pendingJobs = new ArrayList<>();
+    private final Map<String, TestJobReport> finishedJobs = new HashMap<>();
+    private final Map<String, IOException> failedJobs = new HashMap<>();
+    private BooleanSupplier stopCondition = () -> false;
+    private BiConsumer<String, IOException> failureHandler = (testjobId, e) -> { };
+    private int maxErrors = 1;
+
+    public TestJobPoller(ReportFetcher fetcher, long initialInterval, long maxInterval, long timeout, Log log) {
+        this.fetcher = fetcher;
+        this.initialInterval = Math.max(1, initialInterval);
+        this.maxInterval = Math.max(this.initialInterval, maxInterval);
+        this.timeout = timeout;
+        this.log = log;
+    }
+
+    public void add(TestJobReport submitted) {
+        if (isFinished(submitted.getStatus())) {
+            finishedJobs.put(submitted.getTestjobId(), submitted);
+        } else {
+            pendingJobs.add(new PendingJob(submitted.getTestjobId(), submitted.getStatus()));
+        }
+    }
+
+    /**
+     * @param stopCondition checked after every poll, awaitAll() returns as soon as it is true
+     */
+
+    public void stopWhen(BooleanSupplier stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    /**
+     * @param maxErrors the number of consecutive failed polls after which a job is given up - until then
+     *                  failed polls are retried with the same backoff as unchanged statuses
+     */
+
+    public void setMaxErrors(int maxErrors) {
+        this.maxErrors = Math.max(1, maxErrors);
+    }
+
+    /**
+     * @param failureHandler called with the last error when a job is given up
+     */
+
+    public void onFailure(BiConsumer<String, IOException> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * @return the last error of each job that was given up after maxErrors failed polls
+     */
+
+    public Map<String, IOException> getFailedJobs() {
+        return failedJobs;
+    }
+
+    /**
+     * @return the final reports of the jobs that have finished so far
+     */
+
+    public Map<String, TestJobReport> getFinishedJobs() {
+        return finishedJobs;
+    }
+
+    /**
+     * Polls until every added job has finished, the timeout has passed or the stop condition is true
+     *
+     * @return the final reports keyed by testjobId - jobs that timed out, failed or were still running when
+     * polling was stopped are missing from the map
+     */
+
+    public Map<String, TestJobReport> awaitAll() throws InterruptedException {
+        long deadline = timeout > 0 ? System.currentTimeMillis() + timeout : Long.MAX_VALUE;
+
+        while (!pendingJobs.isEmpty()) {
+            PendingJob next = pendingJobs.get(0);
+            for (PendingJob job : pendingJobs) {
+                if (job.nextPoll < next.nextPoll) {
+                    next = job;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (next.nextPoll > deadline) {
+                log.warn(pendingJobs.size() + " test jobs did not finish within " + timeout + "ms");
+                break;
+            }
+
+            if (next.nextPoll > now) {
+                Thread.sleep(next.nextPoll - now);
+            }
+
+            try {
+                TestJobReport report = fetcher.fetch(next.testjobId);
+                next.errors = 0;
+
+                if (isFinished(report.getStatus())) {
+                    pendingJobs.remove(next);
+                    finishedJobs.put(next.testjobId, report);
+                    log.debug("Test job " + next.testjobId + " finished with status " + report.getStatus() +
+                            ", " + pendingJobs.size() + " still pending");
+                } else {
+                    next.reschedule(report.getStatus());
+                }
+            } catch (InterruptedIOException e) {
+                throw new InterruptedException(e.getMessage());
+            } catch (IOException e) {
+                onError(next, e);
+            }
+
+            if (stopCondition.getAsBoolean()) {
+                log.debug("Stopped polling with " + pendingJobs.size() + " test jobs pending");
+                break;
+            }
+        }
+
+        return finishedJobs;
+    }
+
+    /**
+     * Retries a failed poll with backoff, and gives up on the job after maxErrors consecutive failures
+     */
+
+    private void onError(PendingJob job, IOException e) {
+        job.errors++;
+        if (job.errors < maxErrors) {
+            log.warn("Failed to check the status of test job " + job.testjobId + " (" + job.errors + "/" +
+                    maxErrors + "): " + e.getMessage());
+            job.reschedule(job.status);
+            return;
+        }
+
+        pendingJobs.remove(job);
+        failedJobs.put(job.testjobId, e);
+        log.warn("Giving up on test job " + job.testjobId + " after " + job.errors + " failed status checks: " +
+                e.getMessage());
+        failureHandler.accept(job.testjobId, e);
+    }
+
+    public static boolean isFinished(TestJobReport.StatusEnum status) {
+        return status != TestJobReport.StatusEnum.PENDING && status != TestJobReport.StatusEnum.RUNNING;
+    }
+
+    private class PendingJob {
+        private final String testjobId;
+        private TestJobReport.StatusEnum status;
+        private long interval;
+        private long nextPoll;
+        private int errors;
+
+        PendingJob(String testjobId, TestJobReport.StatusEnum status) {
+            this.testjobId = testjobId;
+            this.status = status;
+            this.interval = initialInterval;
+            this.nextPoll = System.currentTimeMillis() + jitter(interval);
+        }
+
+        void reschedule(TestJobReport.StatusEnum newStatus) {
+            if (newStatus != status) {
+                status = newStatus;
+                interval = initialInterval;
+            } else {
+                interval = Math.min(maxInterval, interval * 2);
+            }
+
+            nextPoll = System.currentTimeMillis() + jitter(interval);
+        }
+
+        // "equal jitter" - half of the interval is fixed, the other half random, so jobs submitted
+        // together do not keep polling in lockstep
+        private long jitter(long interval) {
+            long half = interval / 2;
+            return half + ThreadLocalRandom.current().nextLong(interval - half + 1);
+        }
+    }
+}
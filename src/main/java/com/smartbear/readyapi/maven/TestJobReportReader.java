@@ -0,0 +1,103 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.smartbear.readyapi.testengine.model.TestJobReport;
+import com.smartbear.readyapi.testengine.model.TestStepResultReport;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Shared, thread-safe readers for TestJobReport responses that bind directly from the response stream
+ */
+
+public class TestJobReportReader {
+
+    private static final ObjectReader READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .readerFor(TestJobReport.class);
+
+    private static final ObjectReader SKIP_PASSED_STEP_MESSAGES_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .registerModule(new SimpleModule().setDeserializerModifier(new PassedStepMessagesModifier()))
+            .readerFor(TestJobReport.class);
+
+    private TestJobReportReader() {
+    }
+
+    /**
+     * @param skipPassedStepMessages drops the messages of every step that did not fail as soon as the step
+     *                               has been read, so they are never retained for the whole report
+     */
+
+    public static TestJobReport read(InputStream in, boolean skipPassedStepMessages) throws IOException {
+        return reader(skipPassedStepMessages).readValue(in);
+    }
+
+    public static TestJobReport read(String body, boolean skipPassedStepMessages) throws IOException {
+        return reader(skipPassedStepMessages).readValue(body);
+    }
+
+    private static ObjectReader reader(boolean skipPassedStepMessages) {
+        return skipPassedStepMessages ? SKIP_PASSED_STEP_MESSAGES_READER : READER;
+    }
+
+    private static class PassedStepMessagesModifier extends BeanDeserializerModifier {
+        @Override
+        public JsonDeserializer<?> modifyDeserializer(DeserializationConfig config, BeanDescription beanDesc,
+                                                      JsonDeserializer<?> deserializer) {
+            if (beanDesc.getBeanClass() == TestStepResultReport.class) {
+                return new PassedStepMessagesDeserializer(deserializer);
+            }
+            return deserializer;
+        }
+    }
+
+    private static class PassedStepMessagesDeserializer extends DelegatingDeserializer {
+        private static final long serialVersionUID = 1L;
+
+        PassedStepMessagesDeserializer(JsonDeserializer<?> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+            return new PassedStepMessagesDeserializer(newDelegatee);
+        }
+
+        @Override
+        public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            TestStepResultReport step = (TestStepResultReport) super.deserialize(p, ctxt);
+            if (step != null && step.getAssertionStatus() != TestStepResultReport.AssertionStatusEnum.FAIL) {
+                step.setMessages(null);
+            }
+            return step;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs all recipes and projects once and then keeps running, rerunning the recipes and projects that change
+ * in the projectsDirectory - until the build is stopped. The HttpClient and properties are set up once and
+ * kept between runs; a change of testengine.properties reruns everything with the new properties. Tests are
+ * run synchronously unless poll is set, since the results of async submissions are not known.
+ */
+
+@Mojo(name = "watch")
+public class WatchMojo extends RunMojo {
+
+    @Parameter(defaultValue = "500")
+    private long watchQuietPeriod;
+
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true)
+    private MojoExecution mojoExecution;
+
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (isSkipped()) {
+            return;
+        }
+
+        if (isAsync()) {
+            if (isConfigured("async")) {
+                getLog().warn("async is not supported by the watch goal, running tests synchronously - set poll " +
+                        "to submit them asynchronously");
+            }
+            setAsync(false);
+        }
+
+        Path root = getProjectsDirectory().toPath();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            readProperties();
+            initHttpClient();
+            register(watchService, root);
+
+            run(getIncludedFiles());
+
+            while (!Thread.currentThread().isInterrupted()) {
+                getLog().info("Watching " + root + " for changes");
+                Set<String> changes = awaitChanges(watchService, root);
+
+                if (changes.contains(TESTENGINE_PROPERTIES)) {
+                    getLog().info(TESTENGINE_PROPERTIES + " changed, rerunning all tests");
+                    readProperties();
+                    run(getIncludedFiles());
+                } else {
+                    run(getAffectedFiles(changes));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new MojoExecutionException("Error watching " + root, e);
+        } finally {
+            closeHttpClient();
+        }
+    }
+
+    // async defaults to true for the run goal, so only an explicit setting is worth a warning
+    private boolean isConfigured(String parameter) {
+        Xpp3Dom configuration = mojoExecution == null ? null : mojoExecution.getConfiguration();
+        Xpp3Dom child = configuration == null ? null : configuration.getChild(parameter);
+        return child != null && child.getValue() != null;
+    }
+
+    /**
+     * Runs the files, logging failures instead of failing the build so watching goes on
+     */
+
+    private void run(List<String> files) {
+        if (files.isEmpty()) {
+            getLog().info("No tests affected");
+            return;
+        }
+
+        try {
+            runTests(files);
+        } catch (MojoFailureException e) {
+            getLog().error(e.getMessage());
+        } catch (Exception e) {
+            getLog().error("Error running tests: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the tests among the changed files - a changed data file of a data-driven recipe reruns the recipe
+     */
+
+    private List<String> getAffectedFiles(Set<String> changes) throws IOException {
+        Set<String> candidates = new LinkedHashSet<>();
+        for (String change : changes) {
+            candidates.add(change);
+            for (String extension : DataRows.EXTENSIONS) {
+                if (change.toLowerCase().endsWith(extension)) {
+                    candidates.add(change.substring(0, change.length() - extension.length()) + ".json");
+                }
+            }
+        }
+
+        List<String> files = new ArrayList<>();
+        for (String file : getIncludedFiles()) {
+            if (candidates.contains(file)) {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Waits for a change, then collects further changes until none have happened for the watchQuietPeriod, so
+     * saving several files (or an editor writing a file in steps) leads to a single run
+     *
+     * @return the changed paths relative to the root
+     */
+
+    private Set<String> awaitChanges(WatchService watchService, Path root) throws InterruptedException, IOException {
+        Set<String> changes = new LinkedHashSet<>();
+        WatchKey key = watchService.take();
+
+        while (key != null) {
+            Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (dir == null || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    continue;
+                }
+
+                Path path = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    register(watchService, path);
+                    collectFiles(path, root, changes);
+                } else {
+                    changes.add(root.relativize(path).toString());
+                }
+            }
+
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+            key = watchService.poll(watchQuietPeriod, TimeUnit.MILLISECONDS);
+        }
+
+        return changes;
+    }
+
+    private void register(WatchService watchService, Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                watchedDirectories.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    // files in a directory that was created (or moved) into the tree do not have events of their own
+    private static void collectFiles(Path dir, Path root, Set<String> changes) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                changes.add(root.relativize(file).toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2004-2015 SmartBear Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.smartbear.readyapi.maven;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Validates the streamed report against report.xsd, which the CI servers reading it rely on
+ */
+
+public class JUnitReportTest {
+    private File directory;
+    private Map<String, String> properties;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("testengine-report-test").toFile();
+        properties = new HashMap<>();
+        properties.put("environment", "staging");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void savedReportIsValid() throws Exception {
+        JUnitReport report = new JUnitReport();
+        report.setTestSuiteName("suite");
+        report.setPackage("recipes");
+        report.setIncludeTestProperties(true);
+        report.addTestCase("passed.json", 1200, properties);
+        report.addCachedTestCase("cached.json", 300, properties);
+        report.addTestCaseWithFailure("failed.json", 50, "Assertion failed", "<missing stacktrace>", properties);
+        report.addTestCaseWithError("error.json", 0, "Connection refused", "java.net.ConnectException", properties);
+        report.addSkippedTestCase("skipped.json", "maxFailures reached", properties);
+        report.systemOut("out & <more>");
+
+        File file = new File(directory, "report.xml");
+        report.save(file);
+
+        validate(file);
+        assertEquals(5, report.getNoofTestCases());
+    }
+
+    @Test
+    public void mergedReportIsValid() throws Exception {
+        File shard = new File(directory, "shard.xml");
+        try (JUnitReport report = new JUnitReport()) {
+            report.addTestCase("passed.json", 10, properties);
+            report.addTestCaseWithFailure("failed.json", 20, "Assertion failed", "<missing stacktrace>", properties);
+            report.save(shard);
+        }
+
+        File merged = new File(directory, "merged.xml");
+        try (JUnitReport report = new JUnitReport()) {
+            report.addTestCases(shard, "module/");
+            report.addTestCases(shard);
+            report.save(merged);
+            assertEquals(4, report.getNoofTestCases());
+        }
+
+        validate(merged);
+    }
+
+    @Test
+    public void emptyReportIsValid() throws Exception {
+        File file = new File(directory, "empty.xml");
+        try (JUnitReport report = new JUnitReport()) {
+            report.save(file);
+        }
+
+        validate(file);
+    }
+
+    @Test
+    public void closeRemovesUnsavedTestcases() throws Exception {
+        int spoolFiles = countSpoolFiles();
+        JUnitReport report = new JUnitReport();
+        report.addTestCase("passed.json", 10, properties);
+        report.close();
+
+        assertEquals(spoolFiles, countSpoolFiles());
+    }
+
+    private static int countSpoolFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir"))
+                .listFiles((dir, name) -> name.startsWith("testengine-report") && name.endsWith(".xml"));
+        return files == null ? 0 : files.length;
+    }
+
+    private static void validate(File file) throws Exception {
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(JUnitReportTest.class.getResource("/report.xsd"));
+        schema.newValidator().validate(new StreamSource(file));
+    }
+}